@@ -1,24 +1,38 @@
 package com.github.divergent;
 
 import com.alibaba.fastjson2.*;
+import com.github.divergent.analysis.GraphBuilder;
+import com.github.divergent.analysis.ParseCache;
 import com.github.divergent.divide.Cluster;
 import com.github.divergent.divide.StopWatch;
+import com.github.divergent.divide.TimingReport;
+import com.github.divergent.divide.TokenDiff;
 import com.github.divergent.model.Diff;
 import com.github.divergent.model.Patch;
 import com.github.divergent.model.Region;
-import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.divergent.utils.BlobCache;
+import com.github.divergent.utils.Checkpoint;
+import com.github.divergent.utils.DatasetReader;
+import com.github.divergent.utils.GitSession;
+import com.github.divergent.utils.ResultWriter;
 import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Properties;
 import java.awt.*;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.alibaba.fastjson2.JSONWriter.Feature.PrettyFormat;
 import static com.alibaba.fastjson2.JSONWriter.Feature.WriteNulls;
@@ -32,6 +46,11 @@ public class Client {
     private static File timeLog, groups;
     private static final boolean debug = false;
     private static boolean groundTruth=false;
+    private static long parseCacheBudget = ParseCache.DEFAULT_BUDGET;
+    private static long blobCacheBudget = BlobCache.DEFAULT_BUDGET;
+    private static int parallel = 1;
+    private static boolean resume = false;
+    private static ResultWriter.Format format = ResultWriter.Format.ARRAY;
     static {
         try (InputStream in = Client.class.getClassLoader()
                 .getResourceAsStream("config.properties")) {
@@ -86,7 +105,51 @@ public class Client {
                 String value = arg.substring("--repo=".length());
                 name=value;
             }
+            else if (arg.startsWith("--tokendiff=")) {
+                String value = arg.substring("--tokendiff=".length());
+                Cluster.setTokenDiffMode(TokenDiff.Mode.valueOf(value.toUpperCase()));
+            }
+            else if (arg.startsWith("--token-workers=")) {
+                String value = arg.substring("--token-workers=".length());
+                Cluster.setTokenWorkers(Integer.parseInt(value));
+            }
+            else if (arg.startsWith("--dataflow=")) {
+                String value = arg.substring("--dataflow=".length());
+                GraphBuilder.setProxyDataFlow(!value.equals("guard"));
+            }
+            else if (arg.startsWith("--build-workers=")) {
+                String value = arg.substring("--build-workers=".length());
+                GraphBuilder.setBuildWorkers(Integer.parseInt(value));
+            }
+            else if (arg.startsWith("--parse-cache=")) {
+                String value = arg.substring("--parse-cache=".length());
+                parseCacheBudget = Long.parseLong(value);
+            }
+            else if (arg.startsWith("--blob-cache=")) {
+                String value = arg.substring("--blob-cache=".length());
+                blobCacheBudget = Long.parseLong(value);
+            }
+            else if (arg.startsWith("--parallel=")) {
+                String value = arg.substring("--parallel=".length());
+                parallel = Math.max(1, Integer.parseInt(value));
+            }
+            else if (arg.startsWith("--format=")) {
+                String value = arg.substring("--format=".length());
+                format = ResultWriter.Format.valueOf(value.toUpperCase());
+            }
+            else if (arg.equals("--resume")) {
+                resume = true;
+            }
+            else if (arg.equals("--in-memory")) {
+                Diff.setInMemory(true);
+            }
+            else if (arg.startsWith("--refactor-timeout=")) {
+                String value = arg.substring("--refactor-timeout=".length());
+                Cluster.setRefactorTimeout(Long.parseLong(value));
+            }
         }
+        // every case analyzed at once may run a miner
+        Cluster.setRefactorWorkers(parallel);
 
 //        List<String> names = Files.readLines(new File("./evaluation/data-scripts/repos.txt"),
 //                                            Charset.defaultCharset());
@@ -100,104 +163,134 @@ public class Client {
 
     }
 
+    private record CaseResult(int index, JSONObject groups, boolean failed, long cost, String timeRep, StopWatch stopWatch) {
+    }
+
     public static void analyze(String name,boolean first) throws Exception {
         String jsonFile = name + ".json";
         File log = new File(timeLog, name + ".log");
         File temp = new File(output, name);
         File repo = new File(projects, name);
 
-        byte[] bytes = FileUtils.readFileToByteArray(new File(dataset, jsonFile));
-        JSONArray input = JSON.parseArray(bytes);
-
         long sum = 0;
-        int size = input.size(), failCount = 0;
-        File outFile = new File(groups, jsonFile);
-
-        for (int i = 0; i < size; i++) {
-            List<String> commits = input.getJSONArray(i).toList(String.class);
+        int size = 0, failCount = 0;
+        File outFile = new File(groups, format == ResultWriter.Format.LINES ? name + ".jsonl" : jsonFile);
+        // shared by both snapshots and by consecutive cases, so identical files are parsed once
+        ParseCache parseCache = new ParseCache(parseCacheBudget);
+        TimingReport timing = new TimingReport(timeLog, name, resume);
 
-            StopWatch stopWatch = StopWatch.getInstance();
-            stopWatch.mark("analyze");
-            Diff diff;
-            if(groundTruth){
-                int commit_number=commits.size();
-                List<List<Patch>>res=new ArrayList<>();
-                for(int j=0;j<commit_number-1;j++){
-                    List<Patch>allPatch=new ArrayList<>();
-                   String hash1=commits.get(j);
-                   String hash2=commits.get(j+1);
-                   diff=new Diff(repo, temp, hash1, hash2, true);
-                    for(Patch p:diff.getPatchList()){
-                        allPatch.add(p);
-                    }
-                    res.add(allPatch);
-                    diff.cleanUp();
+        ExecutorService pool = Executors.newFixedThreadPool(parallel);
+        // results are written in index order, so only a bounded window of cases runs ahead
+        Deque<Future<CaseResult>> window = new ArrayDeque<>();
+        int submitted = 0;
+        try (DatasetReader input = new DatasetReader(new File(dataset, jsonFile));
+             Checkpoint checkpoint = new Checkpoint(new File(timeLog, name + ".checkpoint"), resume);
+             // one open repository for every case of the project
+             GitSession session = new GitSession(repo, blobCacheBudget)) {
+            boolean resuming = checkpoint.getOffset() >= 0;
+            // results written after the last checkpoint belong to cases that run again
+            try (ResultWriter writer = resuming ? ResultWriter.resume(outFile, format, checkpoint.getOffset())
+                    : new ResultWriter(outFile, format, !first)) {
+                if (resuming) {
+                    // snapshots left behind by the interrupted run
+                    FileUtils.deleteDirectory(temp);
+                    logger.info("Resuming {} with {} cases completed", name, checkpoint.getCompletedCount());
                 }
-                try (FileWriter fw = new FileWriter(outFile, true)) { // append 模式
-                    if (!first) {
-                        fw.write(",\n");
-                    }
-                    JSONObject obj = toJSONObject(res, i);
-                    String jsonText = JSON.toJSONString(obj, PrettyFormat, WriteNulls);
-                    fw.write(jsonText);
-                }
-            }else{
-                String hash1 = commits.get(0), hash2 = commits.get(commits.size() - 1);
-                diff = new Diff(repo, temp, hash1, hash2, true);
-                Cluster cluster = new Cluster(diff);
-                cluster.compute();
-                if (cluster.isFailed()) {
-                    try (FileWriter fw = new FileWriter(outFile, true)) { // append 模式
-                        if (!first) {
-                            fw.write(",\n");
+                while (true) {
+                    while (input.hasNext() && window.size() < 2 * parallel && !(debug && submitted > 0)) {
+                        int index = submitted++;
+                        List<String> commits = input.next();
+                        if (checkpoint.isCompleted(index)) {
+                            continue;
                         }
-                        JSONObject obj = toJSONObject(cluster.getResult(), i);
-                        String jsonText = JSON.toJSONString(obj, PrettyFormat, WriteNulls);
-                        fw.write(jsonText);
+                        // each case materializes its snapshots in its own directory
+                        File caseTemp = new File(temp, String.valueOf(index));
+                        window.add(pool.submit(() -> analyzeCase(index, commits, session, caseTemp, parseCache)));
                     }
-                    logger.error("Case {} has errors and will be skipped", i + 1);
-                    failCount++;
-                } else {
-                    long cost = stopWatch.finish("analyze");
-                    sum += cost;
-                    String timeRep = String.format("Case %d/%d: run cost %dms, refactor cost %dms",
-                            i, size - 1, cost, stopWatch.getTime("refactor"));
-                    logger.info(timeRep);
-                    FileUtils.writeLines(log, List.of(timeRep), true);
-//                output.add(toJSONObject(cluster.getResult(), i));
-                    JSONObject obj = toJSONObject(cluster.getResult(), i);
-                    String jsonText = JSON.toJSONString(obj, PrettyFormat, WriteNulls);
-                    try (FileWriter fw = new FileWriter(outFile, true)) { // append 模式
-                        if (!first) {
-                            fw.write(",\n");
-                        }
-                        fw.write(jsonText);
+                    if (window.isEmpty()) {
+                        break;
                     }
-                    first = false;
+                    CaseResult result = window.poll().get();
+                    int i = result.index();
+                    writer.write(result.groups());
+                    checkpoint.record(i, writer.position());
+                    size++;
+                    if (result.failed()) {
+                        logger.error("Case {} has errors and will be skipped", i + 1);
+                        failCount++;
+                    } else if (result.timeRep() != null) {
+                        sum += result.cost();
+                        String timeRep = String.format("Case %d: %s", i, result.timeRep());
+                        logger.info(timeRep);
+                        FileUtils.writeLines(log, List.of(timeRep), true);
+                    }
+                    timing.add(i, result.stopWatch());
+                    logger.debug(parseCache);
+                    logger.debug(session.getBlobCache());
                 }
-                cluster.cleanUp();
-                diff.cleanUp();
-            }
-
-            stopWatch.reset();
-            JavaParserFacade.clearInstances();
-
-            if (debug) {
-                break;
             }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
 
-        assert size != failCount;
-        String avgRep = String.format("Total cost %dms, average %dms per case", sum, sum / (size - failCount));
+        String avgRep = String.format("Total cost %dms, average %dms per case", sum,
+                size > failCount ? sum / (size - failCount) : 0);
         logger.debug(avgRep);
         logger.debug("Fail count: {}", failCount);
         FileUtils.writeLines(log, List.of(avgRep), true);
+        timing.write();
 
 //        String data = JSON.toJSONString(output, PrettyFormat, WriteNulls);
 //        FileUtils.write(new File(groups, jsonFile), data, Charset.defaultCharset());
         FileUtils.deleteDirectory(temp);
     }
 
+    private static CaseResult analyzeCase(int index, List<String> commits, GitSession session, File temp,
+                                          ParseCache parseCache) throws IOException {
+        // the watch is scoped to this case, threads started by the case inherit it
+        StopWatch stopWatch = StopWatch.start();
+        stopWatch.mark("analyze");
+        try {
+            Diff diff;
+            if (groundTruth) {
+                int commit_number=commits.size();
+                List<List<Patch>>res=new ArrayList<>();
+                for(int j=0;j<commit_number-1;j++){
+                    List<Patch>allPatch=new ArrayList<>();
+                    String hash1=commits.get(j);
+                    String hash2=commits.get(j+1);
+                    diff=new Diff(session, temp, hash1, hash2, true);
+                    for(Patch p:diff.getPatchList()){
+                        allPatch.add(p);
+                    }
+                    res.add(allPatch);
+                    diff.cleanUp();
+                }
+                return new CaseResult(index, toJSONObject(res, index), false, 0, null, stopWatch);
+            }
+            String hash1 = commits.get(0), hash2 = commits.get(commits.size() - 1);
+            diff = new Diff(session, temp, hash1, hash2, true);
+            Cluster cluster = new Cluster(diff, parseCache);
+            cluster.compute();
+            JSONObject obj = toJSONObject(cluster.getResult(), index);
+            CaseResult result;
+            if (cluster.isFailed()) {
+                result = new CaseResult(index, obj, true, 0, null, stopWatch);
+            } else {
+                long cost = stopWatch.finish("analyze");
+                String timeRep = String.format("run cost %dms, refactor cost %dms", cost, stopWatch.getTime("refactor"));
+                result = new CaseResult(index, obj, false, cost, timeRep, stopWatch);
+            }
+            cluster.cleanUp();
+            diff.cleanUp();
+            return result;
+        } finally {
+            GraphBuilder.clearFacades();
+        }
+    }
+
     private static JSONObject toJSONObject(List<List<Patch>> result, int index) {
         JSONArray array = new JSONArray();
         for (List<Patch> list : result) {
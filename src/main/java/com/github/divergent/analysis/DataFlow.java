@@ -31,10 +31,16 @@ public class DataFlow extends VoidVisitorAdapter<Void> {
 	private final MapFact<Node, SetFact<ResolvedType>> typeRefs;
 	private final List<Parameter> params;
 	private final List<Statement> statements;
+	private final ResolutionCache cache;
 
 	public DataFlow(List<Parameter> params, List<Statement> statements) {
+		this(params, statements, new ResolutionCache());
+	}
+
+	public DataFlow(List<Parameter> params, List<Statement> statements, ResolutionCache cache) {
 		this.params = params;
 		this.statements = statements;
+		this.cache = cache;
 		this.useToDef = new MapFact<>();
 		this.control = new MapFact<>();
 		this.typeRefs = new MapFact<>();
@@ -306,7 +312,7 @@ public class DataFlow extends VoidVisitorAdapter<Void> {
 				SetFact<ResolvedType> output = SetFact.of();
 				for (ResolvedType type : types) {
 					var impl = (ReferenceTypeImpl) type;
-					var methods = impl.getAllMethodsVisibleToInheritors();
+					var methods = cache.getVisibleMethods(impl);
 					for (ResolvedMethodDeclaration method : methods) {
 						if (!method.getName().equals(n.getNameAsString()) || method.getNumberOfParams() != args.size()) {
 							continue;
@@ -365,7 +371,7 @@ public class DataFlow extends VoidVisitorAdapter<Void> {
 			SetFact<Node> output = SetFact.of();
 			for (ResolvedType type : types) {
 				var impl = (ReferenceTypeImpl) type;
-				var methods = impl.getAllMethodsVisibleToInheritors();
+				var methods = cache.getVisibleMethods(impl);
 				for (ResolvedMethodDeclaration method : methods) {
 					if (method.isStatic() && method.getName().equals(n.getId())) {
 //						logger.error("{} -> {}", n, method);
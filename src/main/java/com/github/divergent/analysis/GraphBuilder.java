@@ -1,5 +1,6 @@
 package com.github.divergent.analysis;
 
+import com.github.divergent.divide.StopWatch;
 import com.github.divergent.model.*;
 import com.github.divergent.utils.StringReps;
 import com.github.javaparser.*;
@@ -13,15 +14,14 @@ import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.github.javaparser.resolution.TypeSolver;
 import com.github.javaparser.resolution.UnsolvedSymbolException;
 import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
-import com.github.javaparser.resolution.model.SymbolReference;
 import com.github.javaparser.resolution.types.ResolvedType;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
 import com.github.javaparser.symbolsolver.javaparsermodel.declarations.*;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.*;
-import com.github.javaparser.utils.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -35,6 +35,7 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -47,23 +48,63 @@ import static com.github.javaparser.ast.body.CallableDeclaration.Signature;
 public class GraphBuilder {
     private static final Logger logger = LogManager.getLogger(GraphBuilder.class);
     private final Snapshot snapshot;
-    private final CombinedTypeSolver typeSolver;
-    private final JavaParserAdapter parser;
+    private final Resolver resolver;
+    private final ParseCache parseCache;
     private final Graph<TreeNode, Edge> graph;
+    // One canonical TreeNode per AST node, nodes parsed twice from the same file share it as well
+    private final Map<Node, TreeNode> treeNodes = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<TreeNode, TreeNode> canonical = new ConcurrentHashMap<>();
+    // hit counts of the resolution caches of all resolvers
+    private final ResolutionCache.Stats resolutionStats = new ResolutionCache.Stats();
+    private StopWatch stopWatch;
+    private static boolean proxyDataFlow = true;
+    private static int buildWorkers = 1;
 
     public GraphBuilder(Snapshot snapshot) {
-        this.snapshot = snapshot;
-        this.typeSolver = new CombinedTypeSolver(new ReflectionTypeSolver());
-        this.initTypeSolvers();
+        this(snapshot, null);
+    }
 
-        ParserConfiguration config = new ParserConfiguration();
-        config.setSymbolResolver(new JavaSymbolSolver(typeSolver))
-                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
-        this.parser = JavaParserAdapter.of(new JavaParser(config));
+    public GraphBuilder(Snapshot snapshot, ParseCache parseCache) {
+        this.snapshot = snapshot;
+        this.parseCache = parseCache;
+        this.stopWatch = StopWatch.getInstance();
+        this.resolver = new Resolver();
         this.graph = new Graph<>();
     }
 
-    private void initTypeSolvers() {
+    /**
+     * Type solvers, symbol solver and parser of one thread. JavaParser and the facades of a type solver
+     * keep unsynchronized caches, so threads never share them; declarations solved by different resolvers
+     * are distinct AST nodes but map to the same TreeNode.
+     */
+    private class Resolver {
+        private final TypeSolver typeSolver;
+        private final JavaSymbolSolver symbolSolver;
+        private final JavaParserAdapter parser;
+        private final ResolutionCache cache;
+
+        private Resolver() {
+            CombinedTypeSolver combined = new CombinedTypeSolver(new ReflectionTypeSolver());
+            try (var ignored = stopWatch.time("graph.typesolver.init")) {
+                initTypeSolvers(combined);
+            }
+            // type solving happens lazily while files are visited, the wrapper times it as a phase of its own
+            this.typeSolver = new TimedTypeSolver(combined, stopWatch, "graph.typesolve");
+            this.symbolSolver = new JavaSymbolSolver(typeSolver);
+
+            ParserConfiguration config = new ParserConfiguration();
+            config.setSymbolResolver(symbolSolver)
+                    .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
+            this.parser = JavaParserAdapter.of(new JavaParser(config));
+            this.cache = new ResolutionCache(resolutionStats);
+        }
+    }
+
+    private void initTypeSolvers(CombinedTypeSolver typeSolver) {
+        if (snapshot.isInMemory()) {
+            initMemoryTypeSolvers(typeSolver);
+            return;
+        }
         try {
             Files.walkFileTree(snapshot.getRoot().toPath(), new SimpleFileVisitor<>() {
                 @Override
@@ -81,31 +122,133 @@ public class GraphBuilder {
         }
     }
 
+    // Same source roots as the directory walk, taken from the file paths of an in-memory snapshot
+    private void initMemoryTypeSolvers(CombinedTypeSolver typeSolver) {
+        Set<String> roots = new TreeSet<>();
+        for (String path : snapshot.getFilePaths()) {
+            int end = -1;
+            do {
+                String dir = end < 0 ? "" : path.substring(0, end);
+                // the shortest valid prefix is the root, the walk skips the subtree below it
+                if (isValidPath(new File(snapshot.getRoot(), dir).getPath())) {
+                    roots.add(dir);
+                    break;
+                }
+                end = path.indexOf('/', end + 1);
+            } while (end >= 0);
+        }
+        roots.forEach(root -> typeSolver.add(new MemoryTypeSolver(snapshot, root)));
+    }
+
     public boolean build() {
-        File base = snapshot.getRoot();
-        AtomicBoolean flag = new AtomicBoolean(true);
-        snapshot.getViewMap().forEach((path, view) -> {
-            try {
-                File file = new File(base, path);
-                // Parse file to get range for each AST node
-                CompilationUnit root = parser.parse(file);
-                root.accept(new GeneralVisitor(root), view);
-            } catch (FileNotFoundException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalStateException | ParseProblemException e) {
-                flag.set(false);
-            }
-        });
-        JavaParserFacade.clearInstances();
-        return flag.get();
+        // pool threads do not inherit the watch of the case
+        stopWatch = StopWatch.getInstance();
+        List<Map.Entry<String, FileView>> views = new ArrayList<>(snapshot.getViewMap().entrySet());
+        List<List<Edge>> edges;
+        if (Math.min(buildWorkers, views.size()) <= 1) {
+            edges = new ArrayList<>(views.size());
+            views.forEach(entry -> edges.add(buildFile(resolver, entry.getKey(), entry.getValue())));
+        } else {
+            edges = buildParallel(views);
+        }
+        clearFacades();
+        logger.debug(resolutionStats);
+
+        // edges are added file by file in view order, whichever thread produced them
+        boolean flag = true;
+        for (List<Edge> fileEdges : edges) {
+            if (fileEdges == null) {
+                flag = false;
+                continue;
+            }
+            fileEdges.forEach(edge -> graph.addEdge(edge.getSource(), edge.getTarget(), edge));
+        }
+        return flag;
+    }
+
+    // Files are independent apart from type solving, so each one is parsed and visited as a separate task
+    private List<List<Edge>> buildParallel(List<Map.Entry<String, FileView>> views) {
+        Map<Thread, Resolver> resolvers = new ConcurrentHashMap<>();
+        AtomicBoolean claimed = new AtomicBoolean();
+        List<Callable<List<Edge>>> tasks = new ArrayList<>(views.size());
+        for (Map.Entry<String, FileView> entry : views) {
+            tasks.add(() -> {
+                Resolver local = resolvers.get(Thread.currentThread());
+                if (local == null) {
+                    // the resolver built with this builder goes to the first thread
+                    local = claimed.compareAndSet(false, true) ? resolver : new Resolver();
+                    resolvers.put(Thread.currentThread(), local);
+                }
+                return buildFile(local, entry.getKey(), entry.getValue());
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(buildWorkers, views.size()));
+        try {
+            List<List<Edge>> edges = new ArrayList<>(views.size());
+            for (Future<List<Edge>> future : pool.invokeAll(tasks)) {
+                edges.add(future.get());
+            }
+            return edges;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Edges found in one file, null if it cannot be parsed or resolved
+    private List<Edge> buildFile(Resolver resolver, String path, FileView view) {
+        List<Edge> edges = new ArrayList<>();
+        try {
+            File file = new File(snapshot.getRoot(), path);
+            // Parse file to get range for each AST node
+            CompilationUnit root;
+            try (var ignored = stopWatch.time("graph.parse")) {
+                root = parse(resolver, file, view);
+            }
+            try (var ignored = stopWatch.time("graph.visit")) {
+                root.accept(new GeneralVisitor(root, resolver, edges), view);
+            }
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        } catch (IllegalStateException | ParseProblemException e) {
+            return null;
+        }
+        return edges;
+    }
+
+    // JavaParserFacade keeps a global table of facades, guarded by the class lock in JavaParserFacade.get()
+    public static void clearFacades() {
+        synchronized (JavaParserFacade.class) {
+            JavaParserFacade.clearInstances();
+        }
+    }
+
+    private CompilationUnit parse(Resolver resolver, File file, FileView view) throws FileNotFoundException {
+        JavaParserAdapter parser = resolver.parser;
+        if (view.getContent() == null) {
+            return parser.parse(file);
+        }
+        CompilationUnit root = parseCache == null ? parser.parse(view.getContent())
+                : parseCache.obtain(view.getContent(), () -> parser.parse(view.getContent()));
+        // a reused unit still points to the storage and solver of the snapshot it was parsed in
+        root.setStorage(file.toPath());
+        root.setData(Node.SYMBOL_RESOLVER_KEY, resolver.symbolSolver);
+        return root;
     }
 
-    private void addEdge(Node x, Node y, Edge.Type type) {
-//		logger.debug("{} -> {}", n1, n2);
-        TreeNode source = new TreeNode(x, getNodePath(x));
-        TreeNode target = new TreeNode(y, getNodePath(y));
-        Edge edge = new Edge(source, target, type);
-        graph.addEdge(source, target, edge);
+    // May be called from several threads, every AST node still gets one TreeNode
+    private TreeNode getTreeNode(Node node) {
+        TreeNode treeNode = treeNodes.get(node);
+        if (treeNode == null) {
+            TreeNode created = new TreeNode(node, getNodePath(node));
+            treeNode = canonical.computeIfAbsent(created, __ -> created);
+            treeNodes.put(node, treeNode);
+        }
+        return treeNode;
     }
 
     private String getNodePath(Node node) {
@@ -117,15 +260,40 @@ public class GraphBuilder {
         return graph;
     }
 
+    public ResolutionCache.Stats getResolutionStats() {
+        return resolutionStats;
+    }
+
+    // Guard DataFlow by a generated ByteBuddy subclass, or by the hand-written GuardedDataFlow
+    public static void setProxyDataFlow(boolean enabled) {
+        proxyDataFlow = enabled;
+    }
+
+    public static void setBuildWorkers(int workers) {
+        buildWorkers = Math.max(1, workers);
+    }
+
     private class GeneralVisitor extends VoidVisitorAdapter<FileView> {
         private final CompilationUnit root;
+        private final TypeSolver typeSolver;
+        private final ResolutionCache cache;
+        private final List<Edge> edges;
         private final Set<Type> visited;
 
-        public GeneralVisitor(CompilationUnit root) {
+        public GeneralVisitor(CompilationUnit root, Resolver resolver, List<Edge> edges) {
             this.root = root;
+            this.typeSolver = resolver.typeSolver;
+            this.cache = resolver.cache;
+            this.edges = edges;
             this.visited = new HashSet<>();
         }
 
+        private void addEdge(Node x, Node y, Edge.Type type) {
+            TreeNode source = getTreeNode(x);
+            TreeNode target = getTreeNode(y);
+            edges.add(new Edge(source, target, type));
+        }
+
 
         // ======= analysis for class structure =======
 
@@ -138,18 +306,17 @@ public class GraphBuilder {
             if (isJRELibrary(imported)) {
                 return;
             }
-            SymbolReference<ResolvedReferenceTypeDeclaration> symbolRef;
+            ResolvedReferenceTypeDeclaration resolved;
             if (n.isStatic() && !n.isAsterisk()) {
                 int offset = n.getName().getId().length() + 1;
-                symbolRef = typeSolver.tryToSolveType(StringReps.removeTail(imported, offset));
+                resolved = cache.getDeclaration(StringReps.removeTail(imported, offset), typeSolver);
             } else {
-                symbolRef = typeSolver.tryToSolveType(imported);
+                resolved = cache.getDeclaration(imported, typeSolver);
             }
-            if (!symbolRef.isSolved()) {
+            if (resolved == null) {
                 return;
             }
 
-            ResolvedReferenceTypeDeclaration resolved = symbolRef.getCorrespondingDeclaration();
             TypeDeclaration<?> target = unwrapResolved(resolved);
             if (target == null) {
                 return;
@@ -213,17 +380,11 @@ public class GraphBuilder {
             if (isOutside(n, arg)) {
                 return;
             }
-            Stream.concat(
-                    n.getExtendedTypes().stream().map(t -> new Pair<>(t, EXTEND)),
-                    n.getImplementedTypes().stream().map(t -> new Pair<>(t, IMPLEMENT))
-            ).forEach(pair -> {
-                ClassOrInterfaceType type = pair.a;
-                analyzeType(type);
-                ClassOrInterfaceDeclaration superClass = getClassOrInterface(type);
-                if (superClass != null) {
-                    addEdge(n, superClass, pair.b);
-                }
-            });
+            n.getExtendedTypes().forEach(this::analyzeType);
+            n.getImplementedTypes().forEach(this::analyzeType);
+            ResolutionCache.Supertypes supertypes = cache.getSupertypes(n, this::getClassOrInterface);
+            supertypes.extended().forEach(superClass -> addEdge(n, superClass, EXTEND));
+            supertypes.implemented().forEach(superClass -> addEdge(n, superClass, IMPLEMENT));
             n.getMembers().accept(this, arg);
             n.getAnnotations().forEach(expr -> expr.accept(this, arg));
             createOverload(n);
@@ -234,13 +395,9 @@ public class GraphBuilder {
             if (isOutside(n, arg)) {
                 return;
             }
-            n.getImplementedTypes().forEach(type -> {
-                analyzeType(type);
-                ClassOrInterfaceDeclaration parent = getClassOrInterface(type);
-                if (parent != null) {
-                    addEdge(n, parent, IMPLEMENT);
-                }
-            });
+            n.getImplementedTypes().forEach(this::analyzeType);
+            cache.getSupertypes(n, this::getClassOrInterface).implemented()
+                    .forEach(parent -> addEdge(n, parent, IMPLEMENT));
             n.getMembers().accept(this, arg);
             n.getEntries().accept(this, arg);
             n.getAnnotations().forEach(expr -> expr.accept(this, arg));
@@ -296,11 +453,7 @@ public class GraphBuilder {
                             }
                         }
                         if (parent instanceof EnumDeclaration e) {
-                            for (ClassOrInterfaceType type : e.getImplementedTypes()) {
-                                ClassOrInterfaceDeclaration cls = getClassOrInterface(type);
-                                if (cls == null) {
-                                    continue;
-                                }
+                            for (var cls : cache.getSupertypes(e, this::getClassOrInterface).implemented()) {
                                 if ((target = lookupInterface(cls, signature)) != null) {
                                     break;
                                 }
@@ -413,12 +566,20 @@ public class GraphBuilder {
 
         private void applyDataFlow(List<Parameter> params, List<Statement> statements) {
             // Process def-use and type here
-            File log = new File("output/exception.log");
-            // call analyzeType() for params or vars
-            DataFlow proxy = RunProxy.createProxy(DataFlow.class, new RunProxy.ExceptionLogger(log), null,
-                    new Class[]{List.class, List.class}, new Object[]{params, statements});
+            DataFlow proxy;
+            if (proxyDataFlow) {
+                File log = new File("output/exception.log");
+                // call analyzeType() for params or vars
+                proxy = RunProxy.createProxy(DataFlow.class, new RunProxy.ExceptionLogger(log), null,
+                        new Class[]{List.class, List.class, ResolutionCache.class},
+                        new Object[]{params, statements, cache});
+            } else {
+                proxy = new GuardedDataFlow(params, statements, cache);
+            }
 
-            proxy.analyze();
+            try (var ignored = stopWatch.time("graph.visit.dataflow")) {
+                proxy.analyze();
+            }
             proxy.getUseToDef().forEach((use, def) -> addEdge(use, def, DEF_USE));
             proxy.getControl().forEach((condition, stmt) -> addEdge(condition, stmt, CONTROL));
             proxy.getCallFact().forEach((site, callees) -> {
@@ -437,13 +598,7 @@ public class GraphBuilder {
         }
 
         private boolean isOutside(Node node, FileView view) {
-            boolean[] inside = {false};
-            node.getRange().ifPresent(range -> {
-                for (Region region : view.getRegions()) {
-                    inside[0] |= region.intersect(range.begin.line, range.end.line);
-                }
-            });
-            return !inside[0];
+            return node.getRange().map(range -> !view.intersects(range.begin.line, range.end.line)).orElse(true);
         }
 
         private MethodDeclaration getMethodBySignature(TypeDeclaration<?> cls, Signature signature) {
@@ -522,8 +677,7 @@ public class GraphBuilder {
         }
 
         private ClassOrInterfaceDeclaration getSuperClass(ClassOrInterfaceDeclaration c) {
-            var types = c.getExtendedTypes();
-            return types.isEmpty() ? null : getClassOrInterface(types.get(0));
+            return cache.getSupertypes(c, this::getClassOrInterface).superClass();
         }
 
         private MethodDeclaration resolveOverride(ClassOrInterfaceDeclaration cls, Signature signature) {
@@ -534,13 +688,10 @@ public class GraphBuilder {
                 }
             }
             for (var c = cls; c != null; c = getSuperClass(c)) {
-                for (ClassOrInterfaceType type : c.getImplementedTypes()) {
-                    var iface = getClassOrInterface(type);
-                    if (iface != null) {
-                        var method = lookupInterface(iface, signature);
-                        if (method != null) {
-                            return method;
-                        }
+                for (var iface : cache.getSupertypes(c, this::getClassOrInterface).implemented()) {
+                    var method = lookupInterface(iface, signature);
+                    if (method != null) {
+                        return method;
                     }
                 }
             }
@@ -559,9 +710,8 @@ public class GraphBuilder {
             if (method != null && isVisibleForOverride(method)) {
                 return method;
             }
-            for (ClassOrInterfaceType type : cls.getExtendedTypes()) {
-                var iface = getClassOrInterface(type);
-                if (iface != null && (method = lookupInterface(iface, signature)) != null) {
+            for (var iface : cache.getSupertypes(cls, this::getClassOrInterface).extended()) {
+                if ((method = lookupInterface(iface, signature)) != null) {
                     return method;
                 }
             }
@@ -0,0 +1,142 @@
+package com.github.divergent.analysis;
+
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.*;
+
+import java.util.List;
+
+/**
+ * Same results as {@link DataFlow} behind {@link RunProxy.ExceptionLogger}, without generating a class:
+ * a visit which fails to resolve is dropped and the analysis goes on with its siblings.
+ * Every visit overridden by {@link DataFlow} has to be guarded here.
+ */
+public class GuardedDataFlow extends DataFlow {
+
+	public GuardedDataFlow(List<Parameter> params, List<Statement> statements) {
+		super(params, statements);
+	}
+
+	public GuardedDataFlow(List<Parameter> params, List<Statement> statements, ResolutionCache cache) {
+		super(params, statements, cache);
+	}
+
+	@Override
+	public void analyze() {
+		guard(super::analyze);
+	}
+
+	@Override
+	public void visit(IfStmt n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(ForStmt n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(DoStmt n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(WhileStmt n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(TryStmt n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(Parameter n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(VariableDeclarator n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(NameExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(ObjectCreationExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(ArrayCreationExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(ArrayInitializerExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(ArrayAccessExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(AssignExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(FieldAccessExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(MethodCallExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(MethodReferenceExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(TypeExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(CastExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(InstanceOfExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(NormalAnnotationExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	@Override
+	public void visit(SingleMemberAnnotationExpr n, Void arg) {
+		guard(() -> super.visit(n, arg));
+	}
+
+	private static void guard(Runnable action) {
+		try {
+			action.run();
+		} catch (RuntimeException ignored) {
+
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.github.divergent.analysis;
+
+import com.github.divergent.model.Snapshot;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.resolution.Navigator;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static com.github.divergent.utils.Constant.DOT_JAVA_EXT;
+
+/**
+ * The in-memory counterpart of JavaParserTypeSolver: solves types declared in the files of one source root
+ * of an in-memory snapshot, reading them through the snapshot instead of from disk.
+ * Like JavaParserTypeSolver, a type is first looked up in the file its name maps to and then in every file
+ * of that directory, and parsed units get the storage path the file would have under the snapshot root.
+ */
+public class MemoryTypeSolver implements TypeSolver {
+	private static final Logger logger = LogManager.getLogger(MemoryTypeSolver.class);
+	private final Snapshot snapshot;
+	private final String prefix;
+	// directory relative to the snapshot root -> java files in it
+	private final Map<String, List<String>> directories;
+	private final Map<String, Optional<CompilationUnit>> parsed;
+	private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> found;
+	private final JavaParser parser;
+	private TypeSolver parent;
+
+	public MemoryTypeSolver(Snapshot snapshot, String sourceRoot) {
+		this.snapshot = snapshot;
+		this.prefix = sourceRoot.isEmpty() ? "" : sourceRoot + "/";
+		this.directories = new HashMap<>();
+		this.parsed = new HashMap<>();
+		this.found = new HashMap<>();
+		this.parser = new JavaParser(new ParserConfiguration()
+				.setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17));
+		for (String path : snapshot.getFilePaths()) {
+			if (path.startsWith(prefix) && path.endsWith(DOT_JAVA_EXT)) {
+				String dir = path.substring(0, Math.max(0, path.lastIndexOf('/')));
+				directories.computeIfAbsent(dir, k -> new ArrayList<>()).add(path);
+			}
+		}
+	}
+
+	@Override
+	public TypeSolver getParent() {
+		return parent;
+	}
+
+	@Override
+	public void setParent(TypeSolver parent) {
+		Objects.requireNonNull(parent);
+		if (this.parent != null) {
+			throw new IllegalStateException("This TypeSolver already has a parent.");
+		}
+		if (parent == this) {
+			throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+		}
+		this.parent = parent;
+	}
+
+	@Override
+	public synchronized SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+		SymbolReference<ResolvedReferenceTypeDeclaration> ref = found.get(name);
+		if (ref == null) {
+			ref = solve(name);
+			found.put(name, ref);
+		}
+		return ref;
+	}
+
+	private SymbolReference<ResolvedReferenceTypeDeclaration> solve(String name) {
+		String[] elements = name.split("\\.");
+		for (int i = elements.length; i > 0; i--) {
+			// elements before i name the file, the rest the (nested) type inside it
+			String file = prefix + String.join("/", Arrays.copyOfRange(elements, 0, i)) + DOT_JAVA_EXT;
+			String typeName = String.join(".", Arrays.copyOfRange(elements, i - 1, elements.length));
+
+			Optional<TypeDeclaration<?>> type = parse(file).flatMap(cu -> Navigator.findType(cu, typeName));
+			if (type.isEmpty()) {
+				String dir = file.substring(0, Math.max(0, file.lastIndexOf('/')));
+				for (String other : directories.getOrDefault(dir, List.of())) {
+					type = parse(other).flatMap(cu -> Navigator.findType(cu, typeName));
+					if (type.isPresent()) {
+						break;
+					}
+				}
+			}
+			if (type.isPresent()) {
+				return SymbolReference.solved(JavaParserFacade.get(this).getTypeDeclaration(type.get()));
+			}
+		}
+		return SymbolReference.unsolved();
+	}
+
+	private Optional<CompilationUnit> parse(String path) {
+		return parsed.computeIfAbsent(path, k -> {
+			try {
+				String content = snapshot.readFile(path);
+				if (content == null) {
+					return Optional.empty();
+				}
+				return parser.parse(content).getResult()
+						.map(cu -> cu.setStorage(new File(snapshot.getRoot(), path).toPath()));
+			} catch (IOException e) {
+				logger.error("Failed to read {}: {}", path, e.getMessage());
+				return Optional.empty();
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MemoryTypeSolver{root=%s, files=%d}", prefix,
+				directories.values().stream().mapToInt(List::size).sum());
+	}
+}
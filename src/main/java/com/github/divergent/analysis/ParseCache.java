@@ -0,0 +1,124 @@
+package com.github.divergent.analysis;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Parsed compilation units of one repository, keyed by the blob id of the file content.
+ * It is shared by the prev/next snapshots of a case and by consecutive cases, so identical content
+ * is parsed once and later users get a copy of the AST. The least recently used units are evicted
+ * once the total source length of the cached units exceeds the budget, an AST takes some tens of
+ * times the memory of its source. Resolution state is bound to the type solvers of a snapshot and is
+ * never kept here.
+ * Only the changed files parsed by GraphBuilder go through this cache. Files parsed by the type
+ * solvers to resolve declarations, and the facades' resolution caches, still belong to each snapshot
+ * and are dropped after every case.
+ */
+public class ParseCache {
+	// in chars of source
+	public static final long DEFAULT_BUDGET = 4_000_000;
+	private final Map<ObjectId, Entry> units;
+	private final long budget;
+	private long weight;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private record Entry(CompilationUnit unit, int length) {
+	}
+
+	public ParseCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param budget the total length of the cached sources, in chars
+	 */
+	public ParseCache(long budget) {
+		this.budget = budget;
+		this.units = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public CompilationUnit obtain(String content, Supplier<CompilationUnit> parser) {
+		ObjectId key = hash(content);
+		Entry template;
+		synchronized (units) {
+			template = units.get(key);
+		}
+		if (template != null) {
+			hits.incrementAndGet();
+			return template.unit().clone();
+		}
+		misses.incrementAndGet();
+		CompilationUnit unit = parser.get();
+		// keep a private copy, the returned unit will be resolved and decorated by the caller
+		CompilationUnit copy = unit.clone();
+		copy.removeData(Node.SYMBOL_RESOLVER_KEY);
+		synchronized (units) {
+			if (content.length() <= budget && units.putIfAbsent(key, new Entry(copy, content.length())) == null) {
+				weight += content.length();
+				evict();
+			}
+		}
+		return unit;
+	}
+
+	// Drop the least recently used units until the cache fits its budget, the caller holds the lock
+	private void evict() {
+		Iterator<Entry> it = units.values().iterator();
+		while (weight > budget && it.hasNext()) {
+			weight -= it.next().length();
+			it.remove();
+		}
+	}
+
+	public void clear() {
+		synchronized (units) {
+			units.clear();
+			weight = 0;
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+
+	public int size() {
+		synchronized (units) {
+			return units.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public double getHitRate() {
+		long total = hits.get() + misses.get();
+		return total == 0 ? 0 : (double) hits.get() / total;
+	}
+
+	@Override
+	public String toString() {
+		long chars;
+		synchronized (units) {
+			chars = weight;
+		}
+		return String.format("ParseCache{size=%d, chars=%d, hits=%d, misses=%d, hitRate=%.2f}",
+				size(), chars, getHitCount(), getMissCount(), getHitRate());
+	}
+
+	private static ObjectId hash(String content) {
+		return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, Constants.encode(content));
+	}
+}
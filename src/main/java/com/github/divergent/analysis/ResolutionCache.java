@@ -0,0 +1,172 @@
+package com.github.divergent.analysis;
+
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Resolution results that do not depend on where they are asked from: qualified name -> type declaration,
+ * type declaration -> its resolved supertypes, and type -> methods visible to inheritors.
+ * Declarations are bound to the type solver that produced them, so there is one cache per resolver of a
+ * snapshot, while the counters are shared by all of them. Every table may be read and filled concurrently.
+ */
+public class ResolutionCache {
+	private final Map<String, Optional<ResolvedReferenceTypeDeclaration>> declarations = new ConcurrentHashMap<>();
+	private final Map<TypeDeclaration<?>, Supertypes> supertypes = Collections.synchronizedMap(new IdentityHashMap<>());
+	private final Map<String, List<ResolvedMethodDeclaration>> methods = new ConcurrentHashMap<>();
+	private final Stats stats;
+
+	/**
+	 * @param superClass the first extended type, null if there is none or it cannot be resolved
+	 * @param extended   the resolved extended types, in declaration order
+	 * @param implemented the resolved implemented types, in declaration order
+	 */
+	public record Supertypes(ClassOrInterfaceDeclaration superClass, List<ClassOrInterfaceDeclaration> extended,
+							 List<ClassOrInterfaceDeclaration> implemented) {
+	}
+
+	public ResolutionCache() {
+		this(new Stats());
+	}
+
+	public ResolutionCache(Stats stats) {
+		this.stats = stats;
+	}
+
+	// null if the type solver cannot solve the name
+	public ResolvedReferenceTypeDeclaration getDeclaration(String qualifiedName, TypeSolver typeSolver) {
+		Optional<ResolvedReferenceTypeDeclaration> declaration = declarations.get(qualifiedName);
+		if (declaration != null) {
+			stats.declarations.hit();
+		} else {
+			stats.declarations.miss();
+			SymbolReference<ResolvedReferenceTypeDeclaration> ref = typeSolver.tryToSolveType(qualifiedName);
+			declaration = ref.isSolved() ? Optional.of(ref.getCorrespondingDeclaration()) : Optional.empty();
+			declarations.put(qualifiedName, declaration);
+		}
+		return declaration.orElse(null);
+	}
+
+	/**
+	 * @param resolver resolves one extended or implemented type of cls, null if it cannot
+	 */
+	public Supertypes getSupertypes(TypeDeclaration<?> cls,
+									Function<ClassOrInterfaceType, ClassOrInterfaceDeclaration> resolver) {
+		Supertypes ret = supertypes.get(cls);
+		if (ret != null) {
+			stats.supertypes.hit();
+			return ret;
+		}
+		stats.supertypes.miss();
+		ClassOrInterfaceDeclaration superClass = null;
+		List<ClassOrInterfaceDeclaration> extended = new ArrayList<>(), implemented = new ArrayList<>();
+		if (cls instanceof NodeWithExtends<?> n) {
+			for (int i = 0; i < n.getExtendedTypes().size(); i++) {
+				ClassOrInterfaceDeclaration resolved = resolver.apply(n.getExtendedTypes(i));
+				if (resolved != null) {
+					extended.add(resolved);
+				}
+				if (i == 0) {
+					superClass = resolved;
+				}
+			}
+		}
+		if (cls instanceof NodeWithImplements<?> n) {
+			for (ClassOrInterfaceType type : n.getImplementedTypes()) {
+				ClassOrInterfaceDeclaration resolved = resolver.apply(type);
+				if (resolved != null) {
+					implemented.add(resolved);
+				}
+			}
+		}
+		ret = new Supertypes(superClass, Collections.unmodifiableList(extended), Collections.unmodifiableList(implemented));
+		supertypes.put(cls, ret);
+		return ret;
+	}
+
+	// Same as type.getAllMethodsVisibleToInheritors(), which only depends on the declaration of the type
+	public List<ResolvedMethodDeclaration> getVisibleMethods(ResolvedReferenceType type) {
+		String key = type.getQualifiedName();
+		List<ResolvedMethodDeclaration> ret = methods.get(key);
+		if (ret != null) {
+			stats.methods.hit();
+			return ret;
+		}
+		stats.methods.miss();
+		ret = Collections.unmodifiableList(type.getAllMethodsVisibleToInheritors());
+		methods.put(key, ret);
+		return ret;
+	}
+
+	public Stats getStats() {
+		return stats;
+	}
+
+	// Hit and miss counts of each table, may be updated from several threads
+	public static class Stats {
+		private final Counter declarations = new Counter();
+		private final Counter supertypes = new Counter();
+		private final Counter methods = new Counter();
+
+		public Counter getDeclarations() {
+			return declarations;
+		}
+
+		public Counter getSupertypes() {
+			return supertypes;
+		}
+
+		public Counter getMethods() {
+			return methods;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("ResolutionCache{declarations=%s, supertypes=%s, methods=%s}",
+					declarations, supertypes, methods);
+		}
+	}
+
+	public static class Counter {
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+
+		private void hit() {
+			hits.increment();
+		}
+
+		private void miss() {
+			misses.increment();
+		}
+
+		public long getHitCount() {
+			return hits.sum();
+		}
+
+		public long getMissCount() {
+			return misses.sum();
+		}
+
+		public double getHitRate() {
+			long hit = hits.sum(), total = hit + misses.sum();
+			return total == 0 ? 0 : (double) hit / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d/%d", getHitCount(), getHitCount() + getMissCount());
+		}
+	}
+}
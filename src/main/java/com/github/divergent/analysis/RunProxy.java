@@ -2,6 +2,7 @@ package com.github.divergent.analysis;
 
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.description.NamedElement;
+import net.bytebuddy.description.modifier.Visibility;
 import net.bytebuddy.implementation.MethodDelegation;
 import net.bytebuddy.implementation.bind.annotation.Origin;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
@@ -12,16 +13,27 @@ import net.bytebuddy.matcher.ElementMatchers;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static com.github.divergent.utils.StringReps.*;
 
 public class RunProxy {
+	// the generated subclass delegates to this field, so one class serves every interceptor instance
+	private static final String INTERCEPTOR_FIELD = "interceptor$proxy";
+	private static final Map<ProxyKey, Class<?>> proxies = new ConcurrentHashMap<>();
+
+	private record ProxyKey(Class<?> target, Class<?> interceptor, List<String> names) {
+	}
+
 	public static class ExceptionLogger {
 		private final File log;
 
@@ -48,24 +60,34 @@ public class RunProxy {
 
 	public static <T, E> T createProxy(Class<T> clazz, E interceptor, String[] names,
 									   Class<?>[] paramTypes, Object[] args) {
+		ProxyKey key = new ProxyKey(clazz, interceptor.getClass(), names == null ? null : List.of(names));
+		Class<?> proxyClass = proxies.computeIfAbsent(key, RunProxy::generate);
+		try {
+			T proxy = clazz.cast(proxyClass.getDeclaredConstructor(paramTypes).newInstance(args));
+			Field field = proxyClass.getDeclaredField(INTERCEPTOR_FIELD);
+			field.setAccessible(true);
+			field.set(proxy, interceptor);
+			return proxy;
+		} catch (NoSuchMethodException | NoSuchFieldException | InvocationTargetException | InstantiationException |
+				 IllegalAccessException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private static Class<?> generate(ProxyKey key) {
 		ElementMatcher.Junction<NamedElement> methods;
-		if (names != null) {
-			methods = ElementMatchers.namedOneOf(names);
+		if (key.names() != null) {
+			methods = ElementMatchers.namedOneOf(key.names().toArray(new String[0]));
 		} else {
 			methods = ElementMatchers.any();
 		}
-		try {
-			return new ByteBuddy()
-					.subclass(clazz)
-					.method(methods)
-					.intercept(MethodDelegation.to(interceptor))
-					.make()
-					.load(clazz.getClassLoader())
-					.getLoaded()
-					.getDeclaredConstructor(paramTypes)
-					.newInstance(args);
-		} catch (NoSuchMethodException | InvocationTargetException |InstantiationException | IllegalAccessException e) {
-			throw new IllegalArgumentException(e);
-		}
+		return new ByteBuddy()
+				.subclass(key.target())
+				.defineField(INTERCEPTOR_FIELD, key.interceptor(), Visibility.PUBLIC)
+				.method(methods)
+				.intercept(MethodDelegation.toField(INTERCEPTOR_FIELD))
+				.make()
+				.load(key.target().getClassLoader())
+				.getLoaded();
 	}
 }
@@ -0,0 +1,59 @@
+package com.github.divergent.analysis;
+
+import com.github.divergent.divide.StopWatch;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+
+import java.util.Objects;
+
+/**
+ * The root of a solver hierarchy which adds the time spent solving type names to a phase of a stop watch.
+ * Solvers below it solve the types they depend on through the root again, so only the outermost call is timed.
+ * Resolution of expressions in the facades is still counted in the phase of the visit that asks for it.
+ */
+public class TimedTypeSolver implements TypeSolver {
+	private final TypeSolver delegate;
+	private final StopWatch stopWatch;
+	private final String phase;
+	private TypeSolver parent;
+	// a solver hierarchy is only used by the thread of its resolver
+	private int depth;
+
+	public TimedTypeSolver(TypeSolver delegate, StopWatch stopWatch, String phase) {
+		this.delegate = delegate;
+		this.stopWatch = stopWatch;
+		this.phase = phase;
+		delegate.setParent(this);
+	}
+
+	@Override
+	public TypeSolver getParent() {
+		return parent;
+	}
+
+	@Override
+	public void setParent(TypeSolver parent) {
+		Objects.requireNonNull(parent);
+		if (this.parent != null) {
+			throw new IllegalStateException("This TypeSolver already has a parent.");
+		}
+		if (parent == this) {
+			throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+		}
+		this.parent = parent;
+	}
+
+	@Override
+	public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+		if (depth > 0) {
+			return delegate.tryToSolveType(name);
+		}
+		depth++;
+		try (var ignored = stopWatch.time(phase)) {
+			return delegate.tryToSolveType(name);
+		} finally {
+			depth--;
+		}
+	}
+}
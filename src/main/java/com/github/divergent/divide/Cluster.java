@@ -1,6 +1,7 @@
 package com.github.divergent.divide;
 
 import com.github.divergent.analysis.GraphBuilder;
+import com.github.divergent.analysis.ParseCache;
 import com.github.divergent.model.*;
 import com.github.divergent.model.Patch;
 import com.github.divergent.utils.DotDumper;
@@ -13,10 +14,16 @@ import org.apache.logging.log4j.Logger;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
 
 import com.github.divergent.divide.HyperEdge.Type;
 import org.refactoringminer.api.GitHistoryRefactoringMiner;
@@ -32,14 +39,32 @@ import static org.apache.commons.io.FilenameUtils.separatorsToUnix;
 public class Cluster {
     private static final Logger logger = LogManager.getLogger(Cluster.class);
     private final Diff diff;
+    private final ParseCache parseCache;
     private final List<List<Patch>> groups;
     private final Graph<Patch, HyperEdge> graph;
     private boolean failed = false;
     private static int count = 0;
-    private ScheduledExecutorService exitService = Executors.newSingleThreadScheduledExecutor();
+    private static TokenDiff.Mode tokenDiffMode = TokenDiff.Mode.MEMORY;
+    private static int tokenWorkers = Runtime.getRuntime().availableProcessors();
+    private static long refactorTimeout = 300;
+    private static final double CLONE_THRESHOLD = 0.85;
+    // a miner that ignores the interrupt keeps its thread, once every thread and queue slot is taken
+    // later cases skip refactoring detection instead of piling up threads
+    private static ThreadPoolExecutor refactorService = newRefactorService(1);
+    // one daemon thread for all clusters, a thread per cluster would pile up over a long run
+    private static final ScheduledExecutorService exitService = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-exit");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public Cluster(Diff diff) {
+        this(diff, null);
+    }
+
+    public Cluster(Diff diff, ParseCache parseCache) {
         this.diff = diff;
+        this.parseCache = parseCache;
         this.groups = new ArrayList<>();
         this.graph = new Graph<>();
     }
@@ -54,70 +79,106 @@ public class Cluster {
         }
 
         detectTextual();
-        groups.addAll(new Tarjan<>(graph).getComponents());
-        Set<Patch> visited = groups.stream().flatMap(List::stream).collect(Collectors.toSet());
-        DisjointSet<Patch> union = new DisjointSet<>();
+        IntGraph<Patch> compact = IntGraph.of(graph);
+        try (var ignored = StopWatch.getInstance().time("group.tarjan")) {
+            groups.addAll(new Tarjan<>(compact).getComponents());
+        }
+        boolean[] visited = new boolean[compact.size()];
+        groups.forEach(group -> group.forEach(patch -> visited[compact.getId(patch)] = true));
+        IntDisjointSet union = new IntDisjointSet(diff.getPatchCount());
         for (Patch cur : diff.getPatchList()) {
-            if (visited.contains(cur)) {
+            int id = compact.getId(cur);
+            if (visited[id]) {
                 continue;
             }
-            union.add(cur);
-            for (Patch succ : graph.getSuccsOf(cur)) {
-                if (!visited.contains(succ)) {
-                    union.add(succ);
-                    union.merge(cur, succ);
+            union.add(cur.getId());
+            for (int i = compact.begin(id); i < compact.end(id); i++) {
+                int succ = compact.target(i);
+                if (!visited[succ]) {
+                    int target = compact.getNode(succ).getId();
+                    union.add(target);
+                    union.merge(cur.getId(), target);
                 }
             }
         }
-        groups.addAll(union.getDisjointSets());
+        for (int[] set : union.getDisjointSets()) {
+            groups.add(Arrays.stream(set).mapToObj(diff::getPatch).toList());
+        }
+        // patches and groups in id order, so the output is the same from run to run
+        groups.replaceAll(group -> group.stream().sorted().toList());
+        groups.sort(Comparator.comparing(group -> group.get(0)));
 //        logger.debug("Final group count: {}", groups.size());
     }
 
     private class MergeTask extends Thread {
         private final Snapshot snapshot;
+        // DEPEND edges of this snapshot, added to the graph after the task is joined
+        private final List<HyperEdge> edges = new ArrayList<>();
         public MergeTask(Snapshot snapshot) {
             this.snapshot = snapshot;
         }
 
         @Override
         public void run() {
-            GraphBuilder builder = new GraphBuilder(snapshot);
+            GraphBuilder builder = new GraphBuilder(snapshot, parseCache);
             if (!builder.build()) {
                 failed = true;
                 return;
             }
             Graph<TreeNode, Edge> treeNodeGraph = builder.getGraph();
-            Map<TreeNode, List<Patch>> coverMap = new HashMap<>(treeNodeGraph.getNodeCount());
+            IntGraph<TreeNode> compact = IntGraph.of(treeNodeGraph);
+            // patch indices covered by each tree node, indexed by node id
+            int[][] covers = new int[compact.size()][];
 
             int prefixLen = snapshot.getRoot().getPath().length() + 1;
-            for (TreeNode node : treeNodeGraph.getNodes()) {
+            for (int v = 0; v < compact.size(); v++) {
+                TreeNode node = compact.getNode(v);
                 String path = separatorsToUnix(node.getPath().substring(prefixLen));
                 FileView view = snapshot.getView(path);
                 Info info = node.getInfo();
                 if (view == null) {
                     continue;
                 }
-                List<Patch> cover = new ArrayList<>();
-                for (Region region : view.getRegions()) {
-                    boolean flag = region.getTokens().stream().anyMatch(info::intersect);
-                    if (flag) {
-                        cover.add(diff.getPatch(region.getIndex()));
+                int[] cover = view.getCoveringRegions(info).stream().mapToInt(Region::getIndex).toArray();
+                if (cover.length > 0) {
+                    covers[v] = cover;
+                }
+            }
+            // targets of each source patch, so a pair linked by many tree nodes still yields one DEPEND edge
+            BitSet[] depends = new BitSet[diff.getPatchCount()];
+            BitSet succs = new BitSet();
+            for (int v = 0; v < covers.length; v++) {
+                if (covers[v] == null) {
+                    continue;
+                }
+                succs.clear();
+                for (int i = compact.begin(v); i < compact.end(v); i++) {
+                    int[] covered = covers[compact.target(i)];
+                    if (covered != null) {
+                        for (int index : covered) {
+                            succs.set(index);
+                        }
                     }
                 }
-                if (!cover.isEmpty()) {
-                    coverMap.put(node, cover);
+                if (succs.isEmpty()) {
+                    continue;
                 }
-            }
-            coverMap.forEach((node, cover) -> {
-//                logger.error("{} -> {}", node, cover);
-                List<Patch> succs = treeNodeGraph.getSuccsOf(node).stream().filter(coverMap::containsKey)
-                        .flatMap(succ -> coverMap.get(succ).stream()).toList();
-                for (Patch src : cover) {
-                    for (Patch tgt : succs) {
-                        addEdge(src, tgt, Type.DEPEND);
+                for (int src : covers[v]) {
+                    if (depends[src] == null) {
+                        depends[src] = new BitSet();
                     }
+                    depends[src].or(succs);
                 }
-            });
+            }
+            for (int src = 0; src < depends.length; src++) {
+                if (depends[src] == null) {
+                    continue;
+                }
+                Patch source = diff.getPatch(src);
+                for (int tgt = depends[src].nextSetBit(0); tgt >= 0; tgt = depends[src].nextSetBit(tgt + 1)) {
+                    addEdge(edges, source, diff.getPatch(tgt), Type.DEPEND);
+                }
+            }
 
 //            DotDumper<TreeNode, Edge> dumper = new DotDumper<>();
 //            dumper.dump(treeNodeGraph, new File(String.format("output/hag%d.dot", count)));
@@ -142,34 +203,119 @@ public class Cluster {
         StopWatch.getInstance().mark("graph");
         for (Patch patch : diff.getPatchList()) {
             graph.addNode(patch);
-            tokenDiff(patch.getPrev(), patch.getNext());
+        }
+        // RefactoringMiner only needs file contents, so it runs alongside everything else
+        Future<List<Refactoring>> refactor = submitRefactor();
+        try (var ignored = StopWatch.getInstance().time("graph.tokendiff")) {
+            tokenDiffAll();
         }
         MergeTask task1 = new MergeTask(diff.getPrev());
         MergeTask task2 = new MergeTask(diff.getNext());
         task1.start();
         task2.start();
 
-        detectRefactor();
-        detectClone();
+        // every producer fills its own buffer, the graph is only touched by this thread after the join
+        List<HyperEdge> edges = new ArrayList<>();
+        try (var ignored = StopWatch.getInstance().time("graph.clone")) {
+            detectClone(edges);
+        }
+        detectRefactor(refactor, edges);
         try {
             task1.join();
             task2.join();
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        addEdges(edges);
+        addEdges(task1.edges);
+        addEdges(task2.edges);
         StopWatch.getInstance().finish("graph");
 
         DotDumper<Patch, HyperEdge> dumper = new DotDumper<>();
-        dumper.dump(graph, new File("output/patch.dot"));
+        // each case has its own temp dir, concurrent cases must not share the dump
+        File dir = diff.getTempDir();
+        // in-memory snapshots never create the temp dir
+        if (dir.isDirectory() || dir.mkdirs()) {
+            dumper.dump(graph, new File(dir, "patch.dot"));
+        }
     }
 
-    private synchronized void addEdge(Patch source, Patch target, Type type) {
+    private void addEdge(Patch source, Patch target, Type type) {
         // There is no loop in final graph
         if (!source.equals(target)) {
             graph.addEdge(source, target, new HyperEdge(source, target, type));
         }
     }
 
+    private void addEdge(List<HyperEdge> sink, Patch source, Patch target, Type type) {
+        if (!source.equals(target)) {
+            sink.add(new HyperEdge(source, target, type));
+        }
+    }
+
+    private void addEdges(List<HyperEdge> edges) {
+        for (HyperEdge edge : edges) {
+            graph.addEdge(edge.getSource(), edge.getTarget(), edge);
+        }
+    }
+
+    public static void setTokenDiffMode(TokenDiff.Mode mode) {
+        tokenDiffMode = mode;
+    }
+
+    public static void setTokenWorkers(int workers) {
+        tokenWorkers = Math.max(1, workers);
+    }
+
+    public static void setRefactorTimeout(long seconds) {
+        refactorTimeout = seconds;
+    }
+
+    // Called before any case runs, one miner per case analyzed at once
+    public static void setRefactorWorkers(int workers) {
+        ThreadPoolExecutor old = refactorService;
+        refactorService = newRefactorService(Math.max(1, workers));
+        old.shutdown();
+    }
+
+    private static ThreadPoolExecutor newRefactorService(int workers) {
+        ThreadPoolExecutor service = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workers), r -> {
+            Thread thread = new Thread(r, "cluster-refactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        service.allowCoreThreadTimeOut(true);
+        return service;
+    }
+
+    // Regions of different patches are disjoint, so every patch can be diffed independently
+    private void tokenDiffAll() {
+        List<Patch> patches = diff.getPatchList();
+        int workers = Math.min(tokenWorkers, patches.size());
+        if (workers <= 1) {
+            patches.forEach(patch -> tokenDiff(patch.getPrev(), patch.getNext()));
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>(patches.size());
+            for (Patch patch : patches) {
+                futures.add(pool.submit(() -> tokenDiff(patch.getPrev(), patch.getNext())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     public void tokenDiff(Region prev, Region next) {
         if (prev == null) {
             Info info = new Info(new Position(next.getBegin(), 1), new Position(next.getEnd() + 1, 0));
@@ -178,48 +324,86 @@ public class Cluster {
             Info info = new Info(new Position(prev.getBegin(), 1), new Position(prev.getEnd() + 1, 0));
             prev.addInfo(info);
         } else {
-            File dir = diff.getTempDir();
-            List<String> code1 = prev.getCode();
-            List<String> code2 = next.getCode();
-            try {
-                File f1 = new File(dir, "f1.txt");
-                File f2 = new File(dir, "f2.txt");
-                FileUtils.writeLines(f1, code1);
-                FileUtils.writeLines(f2, code2);
-
-                List<Info> delete = parseInfo(executeCommand(dir, f2, f1), code1);
-                List<Info> insert = parseInfo(executeCommand(dir, f1, f2), code2);
-                for (Info info : delete) {
-                    prev.addInfo(info.rowOffset(prev.getBegin()));
-                }
-                for (Info info : insert) {
-                    next.addInfo(info.rowOffset(next.getBegin()));
+            List<CharSequence> code1 = prev.getCode();
+            List<CharSequence> code2 = next.getCode();
+            List<Info> delete, insert;
+            if (tokenDiffMode == TokenDiff.Mode.GIT) {
+                File dir = diff.getTempDir();
+                // name files after the patch so that concurrent workers never share them
+                File f1 = new File(dir, String.format("f1-%d.txt", prev.getIndex()));
+                File f2 = new File(dir, String.format("f2-%d.txt", next.getIndex()));
+                try {
+                    FileUtils.writeLines(f1, code1);
+                    FileUtils.writeLines(f2, code2);
+
+                    delete = parseInfo(executeCommand(dir, f2, f1), code1);
+                    insert = parseInfo(executeCommand(dir, f1, f2), code2);
+                } catch (IOException e) {
+                    logger.error("Exception occurred when token diff: {}", e.getMessage());
+                    return;
+                } finally {
+                    FileUtils.deleteQuietly(f1);
+                    FileUtils.deleteQuietly(f2);
                 }
-//                FileUtils.delete(f1);
-//                FileUtils.delete(f2);
-            } catch (IOException e) {
-                logger.error("Exception occurred when token diff: {}", e.getMessage());
+            } else {
+                delete = TokenDiff.compute(code2, code1);
+                insert = TokenDiff.compute(code1, code2);
+            }
+            for (Info info : delete) {
+                prev.addInfo(info.rowOffset(prev.getBegin()));
+            }
+            for (Info info : insert) {
+                next.addInfo(info.rowOffset(next.getBegin()));
             }
         }
     }
 
-    private void detectRefactor() {
-        StopWatch.getInstance().mark("refactor");
-        GitHistoryRefactoringMiner miner = new GitHistoryRefactoringMinerImpl();
-        List<Refactoring> refs = new ArrayList<>();
+    // null if the pool is saturated by miners that did not stop at their timeout
+    private Future<List<Refactoring>> submitRefactor() {
+        StopWatch stopWatch = StopWatch.getInstance();
+        Snapshot prev = diff.getPrev(), next = diff.getNext();
         try {
-            miner.detectAtDirectories(diff.getPrev().getRoot(), diff.getNext().getRoot(), new RefactoringHandler() {
-                @Override
-                public void handle(String id, List<Refactoring> result) {
-                    refs.addAll(result);
+            return refactorService.submit(() -> {
+                // pool threads are shared by all cases, so the watch of this case is passed in
+                try (var ignored = stopWatch.time("refactor")) {
+                    GitHistoryRefactoringMiner miner = new GitHistoryRefactoringMinerImpl();
+                    List<Refactoring> refs = new ArrayList<>();
+                    miner.detectAtFileContents(prev.getFileContents(), next.getFileContents(), new RefactoringHandler() {
+                        @Override
+                        public void handle(String id, List<Refactoring> result) {
+                            refs.addAll(result);
+                        }
+                    });
+                    return refs;
                 }
             });
-        } catch (RuntimeException e) {
+        } catch (RejectedExecutionException e) {
+            logger.error("Refactoring detection skipped, {} miners are still running",
+                    refactorService.getActiveCount());
+            return null;
+        }
+    }
+
+    private void detectRefactor(Future<List<Refactoring>> refactor, List<HyperEdge> edges) {
+        if (refactor == null) {
+            return;
+        }
+        List<Refactoring> refs = List.of();
+        try {
+            refs = refactor.get(refactorTimeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // a runaway case only loses its REFACTOR edges
+            refactor.cancel(true);
+            logger.error("Refactoring detection timed out after {}s", refactorTimeout);
+        } catch (ExecutionException e) {
             failed = true;
-            logger.error("Failed to detect refactoring due to: {}", e.getMessage());
+            logger.error("Failed to detect refactoring due to: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            refactor.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
         }
 //        logger.debug(refs);
-        StopWatch.getInstance().finish("refactor");
 
         for (Refactoring ref : refs) {
             Set<Integer> index = new HashSet<>();
@@ -229,8 +413,8 @@ public class Cluster {
 
             for (int i = 1; i < involved.size(); i++) {
                 Patch x = involved.get(i), y = involved.get(i - 1);
-                addEdge(x, y, Type.REFACTOR);
-                addEdge(y, x, Type.REFACTOR);
+                addEdge(edges, x, y, Type.REFACTOR);
+                addEdge(edges, y, x, Type.REFACTOR);
             }
         }
     }
@@ -250,16 +434,29 @@ public class Cluster {
         });
     }
 
-    private void detectClone() {
+    private void detectClone(List<HyperEdge> edges) {
         List<Patch> items = diff.getPatchList();
-        var i = items.listIterator();
-        while (i.hasNext()) {
-            Patch pi = i.next();
-            var j = items.listIterator(i.nextIndex());
-            while (j.hasNext()) {
-                Patch pj = j.next();
-                if (pathEquals(pi, pj) && pi.cosine(pj) >= 0.85) {
-                    addEdge(pi, pj, Type.CLONE);
+        // pathEquals(pi, pj) needs pj to have every side of pi on the same path, so pairs are looked up by path
+        Map<String, List<Integer>> byPrev = new HashMap<>(), byNext = new HashMap<>();
+        for (int k = 0; k < items.size(); k++) {
+            Patch patch = items.get(k);
+            if (patch.hasPrev()) {
+                byPrev.computeIfAbsent(patch.getPrev().getPath(), __ -> new ArrayList<>()).add(k);
+            }
+            if (patch.hasNext()) {
+                byNext.computeIfAbsent(patch.getNext().getPath(), __ -> new ArrayList<>()).add(k);
+            }
+        }
+        for (int i = 0; i < items.size(); i++) {
+            Patch pi = items.get(i);
+            List<Integer> candidates = pi.hasPrev() ? byPrev.get(pi.getPrev().getPath())
+                    : byNext.get(pi.getNext().getPath());
+            // candidates are in list order and contain pi itself, only the ones after it are compared
+            int from = Collections.binarySearch(candidates, i) + 1;
+            for (int j : candidates.subList(from, candidates.size())) {
+                Patch pj = items.get(j);
+                if (pathEquals(pi, pj) && pi.cosineBound(pj) >= CLONE_THRESHOLD && pi.cosine(pj) >= CLONE_THRESHOLD) {
+                    addEdge(edges, pi, pj, Type.CLONE);
                 }
             }
         }
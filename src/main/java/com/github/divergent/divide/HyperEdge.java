@@ -17,6 +17,10 @@ public class HyperEdge extends AbstractEdge<Patch> {
 		this.type = type;
 	}
 
+	public Type getType() {
+		return type;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o)
@@ -0,0 +1,86 @@
+package com.github.divergent.divide;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Union-find over the ints [0, capacity), e.g. patch ids. Only added elements take part in the sets.
+ * Union by size with iterative path halving, so long chains cannot overflow the stack.
+ */
+public class IntDisjointSet {
+	private final int[] parent;
+	private final int[] size;
+	private int setCount;
+
+	public IntDisjointSet(int capacity) {
+		this.parent = new int[capacity];
+		this.size = new int[capacity];
+		// -1 marks an element that has not been added
+		Arrays.fill(parent, -1);
+		this.setCount = 0;
+	}
+
+	public void add(int e) {
+		if (parent[e] == -1) {
+			parent[e] = e;
+			size[e] = 1;
+			setCount++;
+		}
+	}
+
+	public boolean contains(int e) {
+		return parent[e] != -1;
+	}
+
+	public int find(int e) {
+		while (parent[e] != e) {
+			parent[e] = parent[parent[e]];
+			e = parent[e];
+		}
+		return e;
+	}
+
+	public boolean merge(int e1, int e2) {
+		int root1 = find(e1), root2 = find(e2);
+		if (root1 == root2) {
+			return false;
+		}
+		if (size[root1] < size[root2]) {
+			int tmp = root1;
+			root1 = root2;
+			root2 = tmp;
+		}
+		parent[root2] = root1;
+		size[root1] += size[root2];
+		--setCount;
+		return true;
+	}
+
+	public int numberOfSets() {
+		return setCount;
+	}
+
+	/**
+	 * @return the sets in the order of their smallest element, each in ascending order
+	 */
+	public List<int[]> getDisjointSets() {
+		List<int[]> sets = new ArrayList<>(setCount);
+		// slot of each root in sets, assigned as the roots are met in ascending order
+		int[] slot = new int[parent.length], filled = new int[setCount];
+		Arrays.fill(slot, -1);
+		for (int e = 0; e < parent.length; e++) {
+			if (parent[e] == -1) {
+				continue;
+			}
+			int root = find(e);
+			if (slot[root] == -1) {
+				slot[root] = sets.size();
+				sets.add(new int[size[root]]);
+			}
+			int s = slot[root];
+			sets.get(s)[filled[s]++] = e;
+		}
+		return sets;
+	}
+}
@@ -1,45 +1,72 @@
 package com.github.divergent.divide;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class StopWatch {
-    private static StopWatch instance = null;
+    // Threads started by a case (graph builders, token diff workers) inherit the watch of the case
+    private static final InheritableThreadLocal<StopWatch> instance = new InheritableThreadLocal<>() {
+        @Override
+        protected StopWatch initialValue() {
+            return new StopWatch();
+        }
+    };
     private final Map<String, Long> watch;
-    private final Map<String, Long> record;
+    private final Map<String, Phase> record;
 
     public static StopWatch getInstance() {
-        if (instance == null) {
-            instance = new StopWatch();
-        }
-        return instance;
+        return instance.get();
+    }
+
+    // Begin a new case on the current thread
+    public static StopWatch start() {
+        StopWatch stopWatch = new StopWatch();
+        instance.set(stopWatch);
+        return stopWatch;
     }
 
     private StopWatch() {
-        this.watch = new HashMap<>();
-        this.record = new LinkedHashMap<>();
+        this.watch = new ConcurrentHashMap<>();
+        this.record = new ConcurrentHashMap<>();
     }
 
     public void mark(String phase) {
         assert !watch.containsKey(phase);
-        watch.put(phase, System.currentTimeMillis());
+        watch.put(phase, System.nanoTime());
     }
 
     public long finish(String phase) {
-        long cost = System.currentTimeMillis() - watch.get(phase);
-        record.put(phase, cost);
-        return cost;
+        long cost = System.nanoTime() - watch.remove(phase);
+        add(phase, cost);
+        return TimeUnit.NANOSECONDS.toMillis(cost);
+    }
+
+    // Time a nested phase, e.g. try (var ignored = watch.time("graph.parse")) { ... }
+    public Timer time(String phase) {
+        return new Timer(phase, System.nanoTime());
+    }
+
+    public void add(String phase, long nanos) {
+        record.computeIfAbsent(phase, __ -> new Phase()).add(nanos);
     }
 
     public long getTime(String phase) {
-        return record.get(phase);
+        Phase p = record.get(phase);
+        return p == null ? 0 : TimeUnit.NANOSECONDS.toMillis(p.getTotal());
+    }
+
+    public Map<String, Phase> getPhases() {
+        return new TreeMap<>(record);
     }
 
     public String display() {
-        return record.entrySet().stream()
-                .map(entry -> String.format("Phase %s cost %dms", entry.getKey(), entry.getValue()))
+        return getPhases().entrySet().stream()
+                .map(entry -> String.format("Phase %s cost %dms", entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue().getTotal())))
                 .collect(Collectors.joining(", ", "[", "]"));
     }
 
@@ -47,4 +74,44 @@ public class StopWatch {
         watch.clear();
         record.clear();
     }
+
+    public class Timer implements AutoCloseable {
+        private final String phase;
+        private final long begin;
+
+        private Timer(String phase, long begin) {
+            this.phase = phase;
+            this.begin = begin;
+        }
+
+        @Override
+        public void close() {
+            add(phase, System.nanoTime() - begin);
+        }
+    }
+
+    // Accumulated samples of one phase, may be updated from several threads
+    public static class Phase {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void add(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotal() {
+            return total.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+    }
 }
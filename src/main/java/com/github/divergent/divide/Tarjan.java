@@ -1,6 +1,7 @@
 package com.github.divergent.divide;
 
 import com.github.divergent.model.Graph;
+import com.github.divergent.model.IntGraph;
 
 import java.util.*;
 
@@ -8,75 +9,74 @@ public class Tarjan<N> {
 	private final List<List<N>> components = new ArrayList<>();
 
 	public Tarjan(Graph<N, ?> graph) {
+		this(IntGraph.of(graph));
+	}
+
+	public Tarjan(IntGraph<N> graph) {
 		this.compute(graph);
 	}
 
-	private void compute(Graph<N, ?> graph) {
+	private void compute(IntGraph<N> graph) {
 		// use iterative (non-recursive) algorithm to avoid stack overflow
 		// for large graph
-		int index = 0;
-		int size = graph.getNodeCount();
-		Map<N, Integer> indexes = new HashMap<>(size);
-		Map<N, Integer> lows = new HashMap<>(size);
-		Deque<N> stack = new ArrayDeque<>();
-		Set<N> inStack = new HashSet<>();
-		for (N curr : graph) {
-			if (indexes.containsKey(curr)) {
+		int size = graph.size();
+		int[] indexes = new int[size];
+		int[] lows = new int[size];
+		// next successor position of each node on the work stack, so every edge is scanned once
+		int[] cursors = new int[size];
+		boolean[] inStack = new boolean[size];
+		int[] stack = new int[size], workStack = new int[size];
+		int top = 0, workTop = 0, index = 0;
+		Arrays.fill(indexes, -1);
+		for (int curr = 0; curr < size; curr++) {
+			if (indexes[curr] != -1) {
 				continue;
 			}
-			Deque<N> workStack = new ArrayDeque<>();
-			workStack.push(curr);
-			while (!workStack.isEmpty()) {
-				N node = workStack.peek();
-				if (!indexes.containsKey(node)) {
-					indexes.put(node, index);
-					lows.put(node, index);
-					++index;
-					stack.push(node);
-					inStack.add(node);
+			workStack[workTop++] = curr;
+			while (workTop > 0) {
+				int node = workStack[workTop - 1];
+				if (indexes[node] == -1) {
+					indexes[node] = lows[node] = index++;
+					cursors[node] = graph.begin(node);
+					stack[top++] = node;
+					inStack[node] = true;
 				}
-				boolean hasUnvisited = false;
-				for (N succ : graph.getSuccsOf(node)) {
-					if (!indexes.containsKey(succ)) {
-						workStack.push(succ);
-						hasUnvisited = true;
-						break;
-					} else if (indexes.get(node) < indexes.get(succ)) {
-						// node->succ is a forward edge
-						lows.put(node, Math.min(lows.get(node), lows.get(succ)));
-					} else if (inStack.contains(succ)) {
-						lows.put(node, Math.min(lows.get(node), indexes.get(succ)));
+				if (cursors[node] < graph.end(node)) {
+					int succ = graph.target(cursors[node]++);
+					if (indexes[succ] == -1) {
+						workStack[workTop++] = succ;
+					} else if (inStack[succ]) {
+						lows[node] = Math.min(lows[node], indexes[succ]);
 					}
+					continue;
 				}
-				if (!hasUnvisited) {
-					if (lows.get(node).equals(indexes.get(node))) {
-						collectSCC(node, stack, inStack, graph);
-					}
-					workStack.pop();
+				workTop--;
+				if (lows[node] == indexes[node]) {
+					top = collectSCC(node, stack, top, inStack, graph);
+				}
+				if (workTop > 0) {
+					int parent = workStack[workTop - 1];
+					lows[parent] = Math.min(lows[parent], lows[node]);
 				}
 			}
 		}
 	}
 
-	private void collectSCC(N node, Deque<N> stack, Set<N> inStack, Graph<N, ?> graph) {
+	private int collectSCC(int node, int[] stack, int top, boolean[] inStack, IntGraph<N> graph) {
 		List<N> scc = new ArrayList<>();
-		N v;
+		int v;
 		do {
-			v = stack.pop();
-			inStack.remove(v);
-			scc.add(v);
+			v = stack[--top];
+			inStack[v] = false;
+			scc.add(graph.getNode(v));
 		} while (node != v);
-		if (scc.size() > 1) {
+		if (scc.size() > 1 || graph.hasEdge(node, node)) {
 			components.add(scc);
-		} else {
-			N n = scc.get(0);
-			if (graph.hasEdge(n, n)) {
-				components.add(scc);
-			}
 		}
+		return top;
 	}
 
 	public List<List<N>> getComponents() {
 		return components;
 	}
-}
\ No newline at end of file
+}
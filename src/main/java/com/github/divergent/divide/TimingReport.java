@@ -0,0 +1,95 @@
+package com.github.divergent.divide;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.alibaba.fastjson2.JSONWriter.Feature.PrettyFormat;
+
+/**
+ * Machine-readable timings of a run, written next to the text log:
+ * one JSON line per case in {@code <name>.timing.jsonl} and per-phase p50/p95/max over all cases
+ * in {@code <name>.timing.json}. All durations are in nanoseconds.
+ * A new run starts the case file over, a resumed run keeps it and counts its cases in the summary.
+ */
+public class TimingReport {
+    private final File cases;
+    private final File summary;
+    private final Map<String, List<Long>> totals;
+
+    public TimingReport(File logDir, String name, boolean resume) throws IOException {
+        this.cases = new File(logDir, name + ".timing.jsonl");
+        this.summary = new File(logDir, name + ".timing.json");
+        this.totals = new TreeMap<>();
+        if (!resume) {
+            FileUtils.write(cases, "", StandardCharsets.UTF_8);
+        } else if (cases.isFile()) {
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        for (String text : FileUtils.readLines(cases, StandardCharsets.UTF_8)) {
+            JSONObject line;
+            try {
+                line = JSON.parseObject(text);
+            } catch (JSONException e) {
+                // the line being written when the run stopped
+                continue;
+            }
+            if (line == null) {
+                continue;
+            }
+            JSONObject phases = line.getJSONObject("phases");
+            for (String phase : phases.keySet()) {
+                long total = phases.getJSONObject(phase).getLongValue("total");
+                totals.computeIfAbsent(phase, __ -> new ArrayList<>()).add(total);
+            }
+        }
+    }
+
+    public void add(int index, StopWatch stopWatch) throws IOException {
+        JSONObject phases = new JSONObject();
+        stopWatch.getPhases().forEach((phase, p) -> {
+            totals.computeIfAbsent(phase, __ -> new ArrayList<>()).add(p.getTotal());
+            JSONObject obj = new JSONObject();
+            obj.put("count", p.getCount());
+            obj.put("total", p.getTotal());
+            obj.put("max", p.getMax());
+            phases.put(phase, obj);
+        });
+        JSONObject line = new JSONObject();
+        line.put("index", index);
+        line.put("phases", phases);
+        FileUtils.writeLines(cases, List.of(JSON.toJSONString(line)), true);
+    }
+
+    public void write() throws IOException {
+        JSONObject ret = new JSONObject();
+        totals.forEach((phase, samples) -> {
+            List<Long> sorted = samples.stream().sorted().toList();
+            JSONObject obj = new JSONObject();
+            obj.put("cases", sorted.size());
+            obj.put("p50", percentile(sorted, 0.50));
+            obj.put("p95", percentile(sorted, 0.95));
+            obj.put("max", sorted.get(sorted.size() - 1));
+            ret.put(phase, obj);
+        });
+        FileUtils.write(summary, JSON.toJSONString(ret, PrettyFormat), StandardCharsets.UTF_8);
+    }
+
+    // nearest-rank percentile
+    private static long percentile(List<Long> sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+}
@@ -2,6 +2,10 @@ package com.github.divergent.divide;
 
 import com.github.divergent.model.Info;
 import com.github.javaparser.Position;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,9 +18,39 @@ import java.util.List;
 
 public class TokenDiff {
 	private static final Logger logger = LoggerFactory.getLogger(TokenDiff.class);
+	// git diff --word-diff is driven by xdiff's default (myers) algorithm
+	private static final DiffAlgorithm algorithm = DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.MYERS);
+
+	public enum Mode {
+		MEMORY, // tokenize and diff the region code in process
+		GIT     // fork `git diff --word-diff=porcelain` on temp files
+	}
+
+	// Get info for tokens of `to` which are not in `from`, same as parseInfo() on git's output
+	public static List<Info> compute(List<? extends CharSequence> from, List<? extends CharSequence> to) {
+		Tokens a = new Tokens(from), b = new Tokens(to);
+		List<Info> result = new ArrayList<>();
+		for (Edit edit : algorithm.diff(Tokens.COMPARATOR, a, b)) {
+			int i = edit.getBeginB(), end = edit.getEndB();
+			while (i < end) {
+				// adjacent added tokens in one line are reported as a single span, like git does
+				int j = i;
+				while (j + 1 < end && b.rows[j + 1] == b.rows[i]) {
+					j++;
+				}
+				// an edit crossing a line break also covers the indentation of the next line
+				int col = i > edit.getBeginB() ? 1 : b.cols[i] + 1;
+				Position begin = new Position(b.rows[i], col);
+				Position last = new Position(b.rows[j], b.cols[j] + b.words[j].length());
+				result.add(new Info(begin, last));
+				i = j + 1;
+			}
+		}
+		return result;
+	}
 
 	// Get info for added tokens
-	public static List<Info> parseInfo(List<String> output, List<String> code) {
+	public static List<Info> parseInfo(List<String> output, List<? extends CharSequence> code) {
 		List<Info> result = new ArrayList<>();
 		int row = 0, col = 0;
 		for (int i = 5; i < output.size(); i++) {
@@ -60,4 +94,56 @@ public class TokenDiff {
 		}
 		return output;
 	}
+
+	// Words are runs of non-whitespace characters, the default word regex of git
+	private static class Tokens extends Sequence {
+		private static final SequenceComparator<Tokens> COMPARATOR = new SequenceComparator<>() {
+			@Override
+			public boolean equals(Tokens a, int ai, Tokens b, int bi) {
+				return a.words[ai].equals(b.words[bi]);
+			}
+
+			@Override
+			public int hash(Tokens seq, int ptr) {
+				return seq.words[ptr].hashCode();
+			}
+		};
+
+		private final String[] words;
+		private final int[] rows;
+		private final int[] cols;
+
+		private Tokens(List<? extends CharSequence> lines) {
+			List<String> words = new ArrayList<>();
+			List<int[]> positions = new ArrayList<>();
+			for (int row = 0; row < lines.size(); row++) {
+				CharSequence line = lines.get(row);
+				int col = 0, len = line.length();
+				while (col < len) {
+					if (Character.isWhitespace(line.charAt(col))) {
+						col++;
+						continue;
+					}
+					int start = col;
+					while (col < len && !Character.isWhitespace(line.charAt(col))) {
+						col++;
+					}
+					words.add(line.subSequence(start, col).toString());
+					positions.add(new int[]{row, start});
+				}
+			}
+			this.words = words.toArray(new String[0]);
+			this.rows = new int[positions.size()];
+			this.cols = new int[positions.size()];
+			for (int i = 0; i < positions.size(); i++) {
+				rows[i] = positions.get(i)[0];
+				cols[i] = positions.get(i)[1];
+			}
+		}
+
+		@Override
+		public int size() {
+			return words.length;
+		}
+	}
 }
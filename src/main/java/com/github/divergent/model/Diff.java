@@ -1,19 +1,19 @@
 package com.github.divergent.model;
 
 import com.github.divergent.divide.StopWatch;
-import com.github.divergent.utils.StringReps;
+import com.github.divergent.utils.BlobCache;
+import com.github.divergent.utils.GitSession;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jgit.diff.*;
 import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.treewalk.*;
-import org.eclipse.jgit.util.io.NullOutputStream;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
-import static com.github.divergent.utils.GitUtils.*;
 import static org.eclipse.jgit.diff.DiffEntry.ChangeType;
 
 public class Diff {
@@ -22,33 +22,54 @@ public class Diff {
 	private final Snapshot next;
 	private final File temp;
 	private final Map<Integer, Patch> indexer;
+	private final GitSession session;
+	// a session opened for this diff alone is closed with it
+	private final boolean ownsSession;
+	private static boolean inMemory = false;
 
 	public Diff(File project, File tempDir, String hash1, String hash2, boolean onlyDiff) throws IOException {
+		this(new GitSession(project), true, tempDir, hash1, hash2, onlyDiff);
+	}
+
+	public Diff(GitSession session, File tempDir, String hash1, String hash2, boolean onlyDiff) throws IOException {
+		this(session, false, tempDir, hash1, hash2, onlyDiff);
+	}
+
+	private Diff(GitSession session, boolean ownsSession, File tempDir, String hash1, String hash2,
+				 boolean onlyDiff) throws IOException {
 		logger.info("Comparing: {} -- {}", hash1 ,hash2);
 
 		this.indexer = new HashMap<>();
 		this.temp = tempDir.getCanonicalFile();
-		this.prev = new Snapshot(new File(temp, hash1));
-		this.next = new Snapshot(new File(temp, hash2));
-
-		Repository repo = openRepository(project);
-		var iter1 = getTreeIterator(repo, hash1);
-		var iter2 = getTreeIterator(repo, hash2);
-		if (!onlyDiff) {
-			deepCopy(repo, iter1, prev);
-			deepCopy(repo, iter2, next);
+		this.session = session;
+		this.ownsSession = ownsSession;
+		Repository repo = session.getRepository();
+		this.prev = new Snapshot(new File(temp, hash1), inMemory ? repo.newObjectReader() : null);
+		this.next = new Snapshot(new File(temp, hash2), inMemory ? repo.newObjectReader() : null);
+
+		try (GitSession.Worker git = session.acquire()) {
+			var iter1 = git.getTreeIterator(hash1);
+			var iter2 = git.getTreeIterator(hash2);
+			if (!onlyDiff) {
+				deepCopy(git, iter1, prev);
+				deepCopy(git, iter2, next);
+			}
+			process(git, git.detectDiff(iter1, iter2), onlyDiff);
 		}
-		process(repo, detectDiff(repo, iter1, iter2), onlyDiff);
 	}
 
-	private void deepCopy(Repository repo, AbstractTreeIterator iter, Snapshot snapshot) {
-		try (TreeWalk walk = new TreeWalk(repo)) {
+	private void deepCopy(GitSession.Worker git, AbstractTreeIterator iter, Snapshot snapshot) {
+		try (TreeWalk walk = new TreeWalk(session.getRepository(), git.getReader())) {
 			walk.addTree(iter);
 			walk.setRecursive(true);
 //			walk.setFilter(new PathFilter());
 			while (walk.next()) {
-				byte[] bytes = read(repo, walk.getObjectId(0));
-				snapshot.makeFile(walk.getPathString(), new String(bytes));
+				if (snapshot.isInMemory()) {
+					snapshot.addBlob(walk.getPathString(), walk.getObjectId(0));
+					continue;
+				}
+				byte[] bytes = git.getReader().open(walk.getObjectId(0), Constants.OBJ_BLOB).getBytes();
+				snapshot.makeFile(walk.getPathString(), new String(bytes, StandardCharsets.UTF_8));
 			}
 			iter.reset();
 		} catch (IOException e) {
@@ -56,17 +77,14 @@ public class Diff {
 		}
 	}
 
-	private void process(Repository repo, List<DiffEntry> diff, boolean onlyDiff) throws IOException {
-		DiffFormatter df = new DiffFormatter(NullOutputStream.INSTANCE);
-		df.setRepository(repo);
-		df.setDiffComparator(RawTextComparator.WS_IGNORE_CHANGE);
+	private void process(GitSession.Worker git, List<DiffEntry> diff, boolean onlyDiff) throws IOException {
 		StopWatch.getInstance().mark("diff");
 
 		int index = 0;
 		for (DiffEntry entry : diff) {
 			ChangeType changeType = entry.getChangeType();
 
-			EditList edits = df.toFileHeader(entry).toEditList();
+			EditList edits = git.getEdits(entry);
 			FileView leftView = new FileView(entry.getOldPath());
 			FileView rightView = new FileView(entry.getNewPath());
 
@@ -84,27 +102,29 @@ public class Diff {
 						rightView.addRegion(right);
 					}
 				}
-				indexer.put(index, new Patch(left, right));
+				indexer.put(index, new Patch(index, left, right));
 				index++;
 			}
 			if (!leftView.isEmpty()) {
-				String content = new String(read(repo, entry.getOldId()));
-				saveView(leftView, content, prev, onlyDiff);
+				saveView(leftView, git.readBlob(entry.getOldId()), entry.getOldId().toObjectId(), prev, onlyDiff);
 			}
 			if (!rightView.isEmpty()) {
-				String content = new String(read(repo, entry.getNewId()));
-				saveView(rightView, content, next, onlyDiff);
+				saveView(rightView, git.readBlob(entry.getNewId()), entry.getNewId().toObjectId(), next, onlyDiff);
 			}
 		}
 		StopWatch.getInstance().finish("diff");
 	}
 
-	private void saveView(FileView view, String content, Snapshot snapshot, boolean onlyDiff) throws IOException {
-		view.setContent(content);
-		List<String> codes = StringReps.splitToLines(content);
-		view.getRegions().forEach(r -> r.setCode(codes.subList(r.getBegin() - 1, r.getEnd())));
+	private void saveView(FileView view, BlobCache.Blob blob, ObjectId id, Snapshot snapshot, boolean onlyDiff) throws IOException {
+		String content = blob.text();
+		view.setContent(content, blob.lineOffsets());
 		snapshot.addView(view.getPath(), view);
-		if (onlyDiff) {
+		if (!onlyDiff) {
+			return;
+		}
+		if (snapshot.isInMemory()) {
+			snapshot.addBlob(view.getPath(), id);
+		} else {
 			snapshot.makeFile(view.getPath(), content);
 		}
 	}
@@ -113,9 +133,17 @@ public class Diff {
 		prev.reset();
 		next.reset();
 		indexer.clear();
+		if (ownsSession) {
+			session.close();
+		}
 		FileUtils.deleteDirectory(temp);
 	}
 
+	// Serve snapshots from the object database instead of writing them to the temp dir
+	public static void setInMemory(boolean enabled) {
+		inMemory = enabled;
+	}
+
 	public Patch getPatch(int index) {
 		return indexer.get(index);
 	}
@@ -128,8 +156,12 @@ public class Diff {
 		return next;
 	}
 
+	public int getPatchCount() {
+		return indexer.size();
+	}
+
 	public List<Patch> getPatchList() {
-		return indexer.values().stream().toList();
+		return indexer.values().stream().sorted().toList();
 	}
 
 	public File getTempDir() {
@@ -1,12 +1,23 @@
 package com.github.divergent.model;
 
+import com.github.divergent.utils.StringReps;
+import com.github.javaparser.Position;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class FileView {
 	private String content;
+	// Offset of the first char of each line in content, lines are served as views over it
+	private int[] lineStarts;
 	private final String path;
 	private final List<Region> regions;
+	// Built on first query, regions are all added by then and tokens once the token diff is done
+	private IntervalIndex<Region> lineIndex;
+	private IntervalIndex<Integer> tokenIndex;
 
 	public FileView(String path) {
 		this.path = path;
@@ -19,10 +30,106 @@ public class FileView {
 
 	public void addRegion(Region r) {
 		regions.add(r);
+		lineIndex = null;
+		tokenIndex = null;
+	}
+
+	// Same as testing Region.intersect on every region
+	public boolean intersects(int begin, int end) {
+		return getLineIndex().overlaps(begin, end);
+	}
+
+	// Regions with a token intersecting info, in the order of getRegions()
+	public List<Region> getCoveringRegions(Info info) {
+		BitSet covered = new BitSet(regions.size());
+		getTokenIndex().query(encode(info.begin), encode(info.end), covered::set);
+		List<Region> ret = new ArrayList<>(covered.cardinality());
+		covered.stream().forEach(i -> ret.add(regions.get(i)));
+		return ret;
+	}
+
+	private synchronized IntervalIndex<Region> getLineIndex() {
+		if (lineIndex == null) {
+			IntervalIndex<Region> index = new IntervalIndex<>();
+			regions.forEach(region -> index.add(region.getBegin(), region.getEnd(), region));
+			lineIndex = index.build();
+		}
+		return lineIndex;
+	}
+
+	private synchronized IntervalIndex<Integer> getTokenIndex() {
+		if (tokenIndex == null) {
+			IntervalIndex<Integer> index = new IntervalIndex<>();
+			for (int i = 0; i < regions.size(); i++) {
+				for (Info token : regions.get(i).getTokens()) {
+					index.add(encode(token.begin), encode(token.end), i);
+				}
+			}
+			tokenIndex = index.build();
+		}
+		return tokenIndex;
+	}
+
+	// Orders positions like Position.isBefore/isAfter do
+	private static long encode(Position position) {
+		return ((long) position.line << 32) | (position.column & 0xFFFFFFFFL);
 	}
 
 	public void setContent(String content) {
+		setContent(content, StringReps.lineStarts(content));
+	}
+
+	public void setContent(String content, int[] lineStarts) {
 		this.content = content;
+		this.lineStarts = lineStarts;
+	}
+
+	public int getLineCount() {
+		return lineStarts == null ? 0 : lineStarts.length;
+	}
+
+	// Line number starts from 1, without its line break, same as the lines of StringReps.splitToLines
+	public CharSequence getLine(int line) {
+		int begin = lineStarts[line - 1], end = lineEnd(line);
+		return CharBuffer.wrap(content, begin, end);
+	}
+
+	// Same as getLine(line).toString().strip()
+	public CharSequence getStrippedLine(int line) {
+		int begin = lineStarts[line - 1], end = lineEnd(line);
+		while (begin < end && Character.isWhitespace(content.charAt(begin))) {
+			begin++;
+		}
+		while (end > begin && Character.isWhitespace(content.charAt(end - 1))) {
+			end--;
+		}
+		return CharBuffer.wrap(content, begin, end);
+	}
+
+	/**
+	 * Lines [begin, end] that exist in the file, without copying them.
+	 */
+	public List<CharSequence> getLines(int begin, int end, boolean stripped) {
+		int from = Math.max(begin, 1), to = Math.min(end, getLineCount());
+		return new AbstractList<>() {
+			@Override
+			public CharSequence get(int i) {
+				return stripped ? getStrippedLine(from + i) : getLine(from + i);
+			}
+
+			@Override
+			public int size() {
+				return Math.max(0, to - from + 1);
+			}
+		};
+	}
+
+	private int lineEnd(int line) {
+		if (line == lineStarts.length) {
+			return content.length();
+		}
+		int end = lineStarts[line] - 1;
+		return end > 0 && content.charAt(end - 1) == '\r' ? end - 1 : end;
 	}
 
 	public boolean isEmpty() {
@@ -42,7 +42,34 @@ public class Graph<N, E extends AbstractEdge<N>> implements Iterable<N> {
 	}
 
 	public boolean hasEdge(N source, N target) {
-		return succs.get(source).stream().anyMatch(e -> target.equals(e.target));
+		for (E edge : succs.get(source)) {
+			if (target.equals(edge.target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// The forEach methods below walk the edge sets in place, without the copies of getSuccsOf and friends.
+	// A successor reached by several edges of different kinds is visited once per edge, walks that need each
+	// successor once go through an IntGraph, whose rows hold every distinct target once.
+
+	public void forEachOutEdge(N node, Consumer<? super E> action) {
+		for (E edge : succs.get(node)) {
+			action.accept(edge);
+		}
+	}
+
+	public void forEachSucc(N node, Consumer<? super N> action) {
+		for (E edge : succs.get(node)) {
+			action.accept(edge.target);
+		}
+	}
+
+	public void forEachPred(N node, Consumer<? super N> action) {
+		for (E edge : preds.get(node)) {
+			action.accept(edge.source);
+		}
 	}
 
 	public Set<E> getOutEdgesOf(N node) {
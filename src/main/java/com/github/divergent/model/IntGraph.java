@@ -0,0 +1,107 @@
+package com.github.divergent.model;
+
+import java.util.*;
+
+/**
+ * A read-only copy of a Graph with dense int node ids and successors in CSR form:
+ * the successors of node v are target(i) for i in [begin(v), end(v)), one entry per distinct target
+ * however many edges lead there.
+ */
+public class IntGraph<N> {
+	private final List<N> nodes;
+	private final Map<N, Integer> ids;
+	private final int[] offsets;
+	private final int[] targets;
+
+	private IntGraph(List<N> nodes, Map<N, Integer> ids, int[] offsets, int[] targets) {
+		this.nodes = nodes;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	public static <N> IntGraph<N> of(Graph<N, ?> graph) {
+		int n = graph.getNodeCount();
+		List<N> nodes = new ArrayList<>(n);
+		Map<N, Integer> ids = new HashMap<>(n * 2);
+		for (N node : graph) {
+			ids.put(node, nodes.size());
+			nodes.add(node);
+		}
+
+		Rows rows = new Rows(n);
+		for (int v = 0; v < n; v++) {
+			rows.begin(v);
+			graph.forEachSucc(nodes.get(v), succ -> rows.add(ids.get(succ)));
+		}
+		rows.begin(n);
+		return new IntGraph<>(nodes, ids, rows.offsets, Arrays.copyOf(rows.targets, rows.size));
+	}
+
+	private static class Rows {
+		private final int[] offsets;
+		private int[] targets;
+		private int size;
+		private int row;
+		// owner[t] is the last row target t was added to
+		private final int[] owner;
+
+		private Rows(int n) {
+			this.offsets = new int[n + 1];
+			this.targets = new int[Math.max(16, n)];
+			this.owner = new int[n];
+			Arrays.fill(owner, -1);
+		}
+
+		private void begin(int v) {
+			row = v;
+			offsets[v] = size;
+		}
+
+		private void add(int t) {
+			if (owner[t] == row) {
+				return;
+			}
+			if (size == targets.length) {
+				targets = Arrays.copyOf(targets, size * 2);
+			}
+			owner[t] = row;
+			targets[size++] = t;
+		}
+	}
+
+	public int size() {
+		return nodes.size();
+	}
+
+	public N getNode(int id) {
+		return nodes.get(id);
+	}
+
+	// -1 if the node is not in the graph
+	public int getId(N node) {
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+
+	public int begin(int id) {
+		return offsets[id];
+	}
+
+	public int end(int id) {
+		return offsets[id + 1];
+	}
+
+	public int target(int pos) {
+		return targets[pos];
+	}
+
+	public boolean hasEdge(int source, int target) {
+		for (int i = offsets[source]; i < offsets[source + 1]; i++) {
+			if (targets[i] == target) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
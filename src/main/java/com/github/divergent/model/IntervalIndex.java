@@ -0,0 +1,73 @@
+package com.github.divergent.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Closed intervals sorted by their begin, with the running maximum of their ends.
+ * An overlap query binary-searches the last interval beginning before the query ends and walks back
+ * only while the running maximum still reaches the query, which for the mostly disjoint regions and
+ * tokens of a file is a handful of steps.
+ */
+public class IntervalIndex<T> {
+	private final List<Entry<T>> pending = new ArrayList<>();
+	private long[] begins;
+	private long[] ends;
+	private long[] maxEnds;
+	private Object[] values;
+
+	private record Entry<T>(long begin, long end, T value) {
+	}
+
+	public void add(long begin, long end, T value) {
+		pending.add(new Entry<>(begin, end, value));
+	}
+
+	public IntervalIndex<T> build() {
+		pending.sort(Comparator.comparingLong(Entry::begin));
+		int n = pending.size();
+		begins = new long[n];
+		ends = new long[n];
+		maxEnds = new long[n];
+		values = new Object[n];
+		for (int i = 0; i < n; i++) {
+			Entry<T> entry = pending.get(i);
+			begins[i] = entry.begin();
+			ends[i] = entry.end();
+			maxEnds[i] = i == 0 ? entry.end() : Math.max(maxEnds[i - 1], entry.end());
+			values[i] = entry.value();
+		}
+		pending.clear();
+		return this;
+	}
+
+	public boolean overlaps(long begin, long end) {
+		int last = lastBeginningBefore(end);
+		return last >= 0 && maxEnds[last] >= begin;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void query(long begin, long end, Consumer<T> consumer) {
+		for (int i = lastBeginningBefore(end); i >= 0 && maxEnds[i] >= begin; i--) {
+			if (ends[i] >= begin) {
+				consumer.accept((T) values[i]);
+			}
+		}
+	}
+
+	// Index of the last interval whose begin <= position, or -1
+	private int lastBeginningBefore(long position) {
+		int i = Arrays.binarySearch(begins, position);
+		if (i < 0) {
+			return -i - 2;
+		}
+		// equal begins: move to the last of them
+		while (i + 1 < begins.length && begins[i + 1] == position) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -2,22 +2,27 @@ package com.github.divergent.model;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
-public class Patch {
+public class Patch implements Comparable<Patch> {
+	// the index Diff assigns to the edit, also the index of both regions
+	private final int id;
 	private Region prev;
 	private Region next;
 	private final List<String> actions;
 
-	public Patch() {
+	public Patch(int id, Region prev, Region next) {
+		this.id = id;
+		this.prev = prev;
+		this.next = next;
 		this.actions = new ArrayList<>();
 	}
 
-
 	public Patch(Region prev, Region next) {
-		this.prev = prev;
-		this.next = next;
-		this.actions = new ArrayList<>();
+		this(prev != null ? prev.getIndex() : next.getIndex(), prev, next);
+	}
+
+	public int getId() {
+		return id;
 	}
 
 	public boolean hasPrev() {
@@ -54,6 +59,17 @@ public class Patch {
 		}
 	}
 
+	// An upper bound of cosine(that), cheap enough to skip most pairs before computing it
+	public double cosineBound(Patch that) {
+		if (prev == null) {
+			return next.cosineBound(that.next);
+		} else if (next == null) {
+			return prev.cosineBound(that.prev);
+		} else {
+			return Math.min(next.cosineBound(that.next), prev.cosineBound(that.prev));
+		}
+	}
+
 	public void addAction(String action) {
 		actions.add(action);
 	}
@@ -69,12 +85,17 @@ public class Patch {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		Patch patch = (Patch) o;
-		return Objects.equals(prev, patch.prev) && Objects.equals(next, patch.next) && Objects.equals(actions, patch.actions);
+		return id == patch.id;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(prev, next, actions);
+		return Integer.hashCode(id);
+	}
+
+	@Override
+	public int compareTo(Patch that) {
+		return Integer.compare(id, that.id);
 	}
 
 	@Override
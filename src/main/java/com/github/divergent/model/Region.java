@@ -1,7 +1,5 @@
 package com.github.divergent.model;
 
-import info.debatty.java.stringsimilarity.Cosine;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,14 +9,13 @@ public class Region {
 	private int end;
 	private final FileView view;
 	private final List<Info> tokens;
-	private List<String> code;
+	private Shingles shingles;
 	
 	public Region(FileView view, int index, int begin, int end) {
 		this.index = index;
 		this.begin = begin;
 		this.end = end;
 		this.view = view;
-		this.code = new ArrayList<>();
 		this.tokens = new ArrayList<>();
 	}
 
@@ -39,9 +36,20 @@ public class Region {
 	public double cosine(Region that) {
 		if (that == null)
 			return 0;
-		String s1 = String.join(" ", formatCode());
-		String s2 = String.join(" ", that.formatCode());
-		return new Cosine().similarity(s1, s2);
+		return getShingles().similarity(that.getShingles());
+	}
+
+	public double cosineBound(Region that) {
+		if (that == null)
+			return 0;
+		return getShingles().upperBound(that.getShingles());
+	}
+
+	public Shingles getShingles() {
+		if (shingles == null) {
+			shingles = new Shingles(String.join(" ", formatCode()));
+		}
+		return shingles;
 	}
 
 	public void addInfo(Info info) {
@@ -68,16 +76,12 @@ public class Region {
 		return tokens;
 	}
 
-	public void setCode(List<String> code) {
-		this.code = code;
-	}
-
-	public List<String> getCode() {
-		return code;
+	public List<CharSequence> getCode() {
+		return view.getLines(begin, end, false);
 	}
 
-	public List<String> formatCode() {
-		return code.stream().map(String::strip).toList();
+	public List<CharSequence> formatCode() {
+		return view.getLines(begin, end, true);
 	}
 
 	@Override
@@ -0,0 +1,75 @@
+package com.github.divergent.model;
+
+import info.debatty.java.stringsimilarity.Cosine;
+
+import java.util.Map;
+
+/**
+ * The shingle profile of a piece of code, computed once and reused by every comparison.
+ * similarity() gives exactly what Cosine.similarity(String, String) gives for the two texts:
+ * the profile entries are integers, so the dot product and norms are exact whatever the summation order.
+ */
+public class Shingles {
+	private static final Cosine COSINE = new Cosine();
+	private final String text;
+	private final Map<String, Integer> profile;
+	private final long total;
+	private final int max;
+	private final double norm;
+
+	public Shingles(String text) {
+		this.text = text;
+		this.profile = COSINE.getProfile(text);
+		long total = 0, squares = 0;
+		int max = 0;
+		for (int count : profile.values()) {
+			total += count;
+			squares += (long) count * count;
+			max = Math.max(max, count);
+		}
+		this.total = total;
+		this.max = max;
+		this.norm = Math.sqrt(squares);
+	}
+
+	public double similarity(Shingles that) {
+		if (text.equals(that.text)) {
+			return 1;
+		}
+		if (isShort() || that.isShort()) {
+			return 0;
+		}
+		Map<String, Integer> small = profile, large = that.profile;
+		if (small.size() > large.size()) {
+			small = that.profile;
+			large = profile;
+		}
+		double dot = 0;
+		for (Map.Entry<String, Integer> entry : small.entrySet()) {
+			Integer count = large.get(entry.getKey());
+			if (count != null) {
+				dot += 1.0 * entry.getValue() * count;
+			}
+		}
+		return dot / (norm * that.norm);
+	}
+
+	/**
+	 * An upper bound of similarity() in constant time: the dot product is at most the total count of
+	 * one profile times the largest count of the other.
+	 */
+	public double upperBound(Shingles that) {
+		if (text.equals(that.text)) {
+			return 1;
+		}
+		if (isShort() || that.isShort()) {
+			return 0;
+		}
+		double dot = Math.min(total * that.max, max * that.total);
+		return dot / (norm * that.norm);
+	}
+
+	private boolean isShort() {
+		return text.length() < COSINE.getK();
+	}
+}
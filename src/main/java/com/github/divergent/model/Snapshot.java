@@ -1,12 +1,17 @@
 package com.github.divergent.model;
 
+import com.github.divergent.utils.StringReps;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,15 +19,69 @@ public class Snapshot {
 	private static final Logger logger = LogManager.getLogger(Snapshot.class);
 	private final File root;
 	private final Map<String, FileView> cache;
+	// Every file of the snapshot, with the blob it is read from when the snapshot is kept in memory
+	private final Map<String, ObjectId> files;
+	private final ObjectReader reader;
 
 	public Snapshot(File file) {
+		this(file, null);
+	}
+
+	/**
+	 * @param reader if not null, the snapshot is kept in memory and root is only used to name its files
+	 */
+	public Snapshot(File file, ObjectReader reader) {
 		this.root = file;
 		this.cache = new HashMap<>();
-		if (!file.mkdirs()) {
+		this.files = new HashMap<>();
+		this.reader = reader;
+		if (reader == null && !file.mkdirs()) {
 			logger.info("Path {} already exists", file);
 		}
 	}
 
+	public boolean isInMemory() {
+		return reader != null;
+	}
+
+	public void addBlob(String path, ObjectId id) {
+		files.put(path, id);
+	}
+
+	public Set<String> getFilePaths() {
+		return files.keySet();
+	}
+
+	// ObjectReader is not thread-safe, so reads of one snapshot are serialized
+	public synchronized String readFile(String path) throws IOException {
+		FileView view = cache.get(path);
+		if (view != null && view.getContent() != null) {
+			return view.getContent();
+		}
+		if (!files.containsKey(path)) {
+			return null;
+		}
+		if (isInMemory()) {
+			return new String(reader.open(files.get(path), Constants.OBJ_BLOB).getBytes(), StandardCharsets.UTF_8);
+		}
+		return FileUtils.readFileToString(new File(root, path), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * An immutable copy of the contents of every java file, changed files come from their views without any I/O.
+	 * It is taken under the snapshot lock, so a reader still running after its case timed out
+	 * sees either all files or, once the snapshot is reset, none.
+	 */
+	public synchronized Map<String, String> getFileContents() throws IOException {
+		Map<String, String> contents = new HashMap<>(files.size());
+		for (String path : files.keySet()) {
+			if (StringReps.isJavaFile(path)) {
+				contents.put(path, readFile(path));
+			}
+		}
+		return Collections.unmodifiableMap(contents);
+	}
+
 	public void makeFile(String path, String text) throws IOException {
 		File file = new File(root, path);
 		FileUtils.createParentDirectories(file);
@@ -30,8 +89,9 @@ public class Snapshot {
 			logger.warn("File {} already exists", path);
 		}
 		FileOutputStream fos = new FileOutputStream(file);
-		fos.write(text.getBytes());
+		fos.write(text.getBytes(StandardCharsets.UTF_8));
 		fos.close();
+		files.put(path, null);
 	}
 
 	public Map<String, String> getContentMap() {
@@ -55,7 +115,11 @@ public class Snapshot {
 		return root;
 	}
 
-	public void reset() {
+	public synchronized void reset() {
 		cache.clear();
+		files.clear();
+		if (reader != null) {
+			reader.close();
+		}
     }
 }
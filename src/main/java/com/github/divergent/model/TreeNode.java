@@ -13,6 +13,7 @@ public class TreeNode {
 	private final Node node;
 	private final String path;
 	private final Info info;
+	private final int hash;
 
 	public TreeNode(Node node, String path) {
 		this.node = node;
@@ -23,6 +24,7 @@ public class TreeNode {
 			assert false;
 		}
 		this.info = new Info(range.begin, range.end);
+		this.hash = Objects.hash(path, info, node.getClass());
 	}
 
 	public String getPath() {
@@ -49,11 +51,14 @@ public class TreeNode {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		TreeNode that = (TreeNode) o;
-		return Objects.equals(node, that.node) && Objects.equals(path, that.path) && Objects.equals(info, that.info);
+		// A node of one file is identified by its kind and range, which spares the structural Node.equals
+		// while still matching the same declaration parsed twice, e.g. by a type solver and by the builder
+		return hash == that.hash && node.getClass() == that.node.getClass() && Objects.equals(path, that.path)
+				&& Objects.equals(info, that.info);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(node, path, info);
+		return hash;
 	}
 }
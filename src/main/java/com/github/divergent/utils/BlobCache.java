@@ -0,0 +1,115 @@
+package com.github.divergent.utils;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoded file contents of one repository, keyed by blob id. The dataset chains are consecutive commits,
+ * so the new blob of a case is usually the old blob of the next one and is inflated and indexed only once.
+ * The least recently used blobs are evicted once the total length of the cached texts exceeds the budget,
+ * a blob larger than the budget is returned without being kept.
+ */
+public class BlobCache {
+	// in chars of text
+	public static final long DEFAULT_BUDGET = 8_000_000;
+	private final Map<ObjectId, Blob> blobs;
+	private final long budget;
+	private long weight;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param lineOffsets the offset in text of the first char of each line
+	 */
+	public record Blob(String text, int[] lineOffsets) {
+		public static Blob of(byte[] bytes) {
+			String text = new String(bytes, StandardCharsets.UTF_8);
+			return new Blob(text, StringReps.lineStarts(text));
+		}
+	}
+
+	public interface Loader {
+		byte[] load() throws IOException;
+	}
+
+	public BlobCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param budget the total length of the cached texts, in chars
+	 */
+	public BlobCache(long budget) {
+		this.budget = budget;
+		this.blobs = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	public Blob obtain(ObjectId id, Loader loader) throws IOException {
+		Blob blob;
+		synchronized (blobs) {
+			blob = blobs.get(id);
+		}
+		if (blob != null) {
+			hits.incrementAndGet();
+			return blob;
+		}
+		misses.incrementAndGet();
+		// decoded outside the lock, a concurrent miss on the same blob only repeats the work
+		blob = Blob.of(loader.load());
+		synchronized (blobs) {
+			Blob present = blobs.get(id);
+			if (present != null) {
+				return present;
+			}
+			if (blob.text().length() <= budget) {
+				blobs.put(id, blob);
+				weight += blob.text().length();
+				evict();
+			}
+			return blob;
+		}
+	}
+
+	// Drop the least recently used blobs until the cache fits its budget, the caller holds the lock
+	private void evict() {
+		Iterator<Blob> it = blobs.values().iterator();
+		while (weight > budget && it.hasNext()) {
+			weight -= it.next().text().length();
+			it.remove();
+		}
+	}
+
+	public int size() {
+		synchronized (blobs) {
+			return blobs.size();
+		}
+	}
+
+	// Total length of the cached texts, in chars
+	public long weight() {
+		synchronized (blobs) {
+			return weight;
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		long total = hits.get() + misses.get();
+		return String.format("BlobCache{size=%d, chars=%d, hits=%d, misses=%d, hitRate=%.2f}",
+				size(), weight(), getHitCount(), getMissCount(), total == 0 ? 0 : (double) hits.get() / total);
+	}
+}
@@ -0,0 +1,78 @@
+package com.github.divergent.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records every case whose result reached the output file, one "index offset" line per case,
+ * where offset is the position of the result writer after the case was written.
+ * A resumed run skips the recorded cases and truncates the output back to the last recorded offset,
+ * so a case that was written but not recorded before a crash is analyzed again instead of duplicated.
+ */
+public class Checkpoint implements Closeable {
+	private final Set<Integer> completed = new HashSet<>();
+	private long offset = -1;
+	private final FileChannel channel;
+
+	public Checkpoint(File file, boolean resume) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long valid = resume ? load(file) : 0;
+		// a line cut short by a crash is dropped, that case runs again
+		channel.truncate(valid);
+		channel.position(valid);
+	}
+
+	// Returns the length of the complete lines, which are the ones kept
+	private long load(File file) throws IOException {
+		String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		int end = text.lastIndexOf('\n') + 1;
+		for (String line : text.substring(0, end).split("\n")) {
+			String[] parts = line.trim().split("\\s+");
+			if (parts.length != 2) {
+				continue;
+			}
+			completed.add(Integer.parseInt(parts[0]));
+			offset = Math.max(offset, Long.parseLong(parts[1]));
+		}
+		return text.substring(0, end).getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	public void record(int index, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(String.format("%d %d\n", index, position).getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(false);
+		completed.add(index);
+		offset = Math.max(offset, position);
+	}
+
+	public boolean isCompleted(int index) {
+		return completed.contains(index);
+	}
+
+	public int getCompletedCount() {
+		return completed.size();
+	}
+
+	/**
+	 * @return the output position after the last recorded case, or -1 if nothing was recorded
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,98 @@
+package com.github.divergent.utils;
+
+import com.alibaba.fastjson2.JSON;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the commit lists of a dataset file ({@code [[hash, ...], ...]}) one case at a time.
+ * Only the current element is held in memory, it is cut out by bracket depth and parsed by fastjson2.
+ */
+public class DatasetReader implements Iterator<List<String>>, Closeable {
+	private final Reader reader;
+	private List<String> next;
+
+	public DatasetReader(File file) throws IOException {
+		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		if (skipWhitespace() != '[') {
+			reader.close();
+			throw new IOException(String.format("%s is not a JSON array", file));
+		}
+		this.next = readElement();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public List<String> next() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		List<String> ret = next;
+		try {
+			next = readElement();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return ret;
+	}
+
+	// Returns null at the end of the top-level array
+	private List<String> readElement() throws IOException {
+		int ch = skipWhitespace();
+		if (ch == ',') {
+			ch = skipWhitespace();
+		}
+		if (ch == ']' || ch == -1) {
+			return null;
+		}
+		if (ch != '[') {
+			throw new IOException(String.format("Unexpected character '%c' in dataset", (char) ch));
+		}
+		StringBuilder sb = new StringBuilder();
+		int depth = 0;
+		boolean inString = false, escaped = false;
+		for (; ch != -1; ch = reader.read()) {
+			sb.append((char) ch);
+			if (inString) {
+				if (escaped) {
+					escaped = false;
+				} else if (ch == '\\') {
+					escaped = true;
+				} else if (ch == '"') {
+					inString = false;
+				}
+			} else if (ch == '"') {
+				inString = true;
+			} else if (ch == '[' || ch == '{') {
+				depth++;
+			} else if ((ch == ']' || ch == '}') && --depth == 0) {
+				break;
+			}
+		}
+		if (depth != 0) {
+			throw new EOFException("Unterminated element in dataset");
+		}
+		return JSON.parseArray(sb.toString()).toList(String.class);
+	}
+
+	private int skipWhitespace() throws IOException {
+		int ch;
+		do {
+			ch = reader.read();
+		} while (ch != -1 && Character.isWhitespace(ch));
+		return ch;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -28,7 +28,7 @@ public class DotDumper<N, E extends AbstractEdge<N>> {
 			out.println("digraph G {");
 			out.println("  node [shape=box, style=rounded];");
 			graph.forEach(this::dumpNode);
-			graph.forEach(n -> graph.getOutEdgesOf(n).forEach(this::dumpEdge));
+			graph.forEach(n -> graph.forEachOutEdge(n, this::dumpEdge));
 			out.println("}");
 		} catch (FileNotFoundException e) {
 			logger.error("Fail to dump graph to {}", output.getAbsolutePath(), e.getCause());
@@ -0,0 +1,147 @@
+package com.github.divergent.utils;
+
+import org.eclipse.jgit.diff.*;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.NullOutputStream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import static com.github.divergent.utils.GitUtils.openRepository;
+
+/**
+ * One open repository for a whole dataset run. Readers, walks and diff formatters are not thread-safe,
+ * so they are bundled in workers that cases borrow and return, and the repository keeps its pack
+ * indexes open instead of reopening them for every case.
+ */
+public class GitSession implements Closeable {
+	private final Repository repo;
+	// commit hash -> tree id, the dataset chains revisit every commit twice
+	private final Map<String, ObjectId> trees = new ConcurrentHashMap<>();
+	private final BlobCache blobs;
+	private final Deque<Worker> idle = new ConcurrentLinkedDeque<>();
+	private final List<Worker> workers = Collections.synchronizedList(new ArrayList<>());
+
+	public GitSession(File project) throws IOException {
+		this(project, BlobCache.DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param blobCacheBudget the total length of the cached file contents, in chars
+	 */
+	public GitSession(File project, long blobCacheBudget) throws IOException {
+		this.repo = openRepository(project);
+		this.blobs = new BlobCache(blobCacheBudget);
+	}
+
+	public Repository getRepository() {
+		return repo;
+	}
+
+	public BlobCache getBlobCache() {
+		return blobs;
+	}
+
+	// The worker goes back to the pool when it is closed
+	public Worker acquire() {
+		Worker worker = idle.poll();
+		return worker != null ? worker : new Worker();
+	}
+
+	@Override
+	public void close() {
+		synchronized (workers) {
+			workers.forEach(Worker::dispose);
+			workers.clear();
+		}
+		idle.clear();
+		repo.close();
+	}
+
+	public class Worker implements AutoCloseable {
+		private final ObjectReader reader;
+		private final RevWalk walk;
+		// finds the changed java files, with rename detection
+		private final DiffFormatter scanner;
+		// computes the edits of one file, ignoring whitespace changes
+		private final DiffFormatter formatter;
+
+		private Worker() {
+			this.reader = repo.newObjectReader();
+			this.walk = new RevWalk(reader);
+			walk.setRetainBody(false);
+
+			this.scanner = new DiffFormatter(NullOutputStream.INSTANCE);
+			scanner.setReader(reader, repo.getConfig());
+			scanner.setDetectRenames(true);
+			scanner.setDiffComparator(RawTextComparator.DEFAULT);
+			scanner.setPathFilter(PathSuffixFilter.create(".java"));
+			scanner.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM));
+
+			this.formatter = new DiffFormatter(NullOutputStream.INSTANCE);
+			formatter.setReader(reader, repo.getConfig());
+			formatter.setDiffComparator(RawTextComparator.WS_IGNORE_CHANGE);
+			workers.add(this);
+		}
+
+		public ObjectReader getReader() {
+			return reader;
+		}
+
+		public AbstractTreeIterator getTreeIterator(String hash) throws IOException {
+			ObjectId tree = trees.get(hash);
+			if (tree == null) {
+				ObjectId commit = ObjectId.isId(hash) ? ObjectId.fromString(hash) : repo.resolve(hash);
+				if (commit == null) {
+					throw new IOException(String.format("Cannot resolve %s", hash));
+				}
+				tree = walk.parseCommit(commit).getTree().getId();
+				trees.put(hash, tree);
+			}
+			CanonicalTreeParser parser = new CanonicalTreeParser();
+			parser.reset(reader, tree);
+			return parser;
+		}
+
+		// Same as GitUtils.detectDiff
+		public List<DiffEntry> detectDiff(AbstractTreeIterator iter1, AbstractTreeIterator iter2) throws IOException {
+			List<DiffEntry> ret = scanner.scan(iter1, iter2);
+			iter1.reset();
+			iter2.reset();
+			return ret;
+		}
+
+		public EditList getEdits(DiffEntry entry) throws IOException {
+			return formatter.toFileHeader(entry).toEditList();
+		}
+
+		public byte[] read(AbbreviatedObjectId id) throws IOException {
+			return reader.open(id.toObjectId(), Constants.OBJ_BLOB).getBytes();
+		}
+
+		public BlobCache.Blob readBlob(AbbreviatedObjectId id) throws IOException {
+			return blobs.obtain(id.toObjectId(), () -> read(id));
+		}
+
+		@Override
+		public void close() {
+			walk.reset();
+			idle.push(this);
+		}
+
+		private void dispose() {
+			scanner.close();
+			formatter.close();
+			walk.close();
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.github.divergent.utils;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import static com.alibaba.fastjson2.JSONWriter.Feature.PrettyFormat;
+import static com.alibaba.fastjson2.JSONWriter.Feature.WriteNulls;
+
+/**
+ * Writes the result of each case to one file kept open for the whole run.
+ * In ARRAY format the closing bracket is rewritten after every case, in LINES format every case is
+ * one line, so the file is valid after each write and a crashed run leaves no malformed output.
+ * Appending in ARRAY format to a file of the older layout, bare objects joined by ",\n" without brackets,
+ * first wraps its content into an array.
+ * Every case is forced to disk before write returns, so a recorded position never points past durable output.
+ */
+public class ResultWriter implements Closeable {
+	private static final String ARRAY_END = "\n]\n";
+
+	public enum Format {
+		ARRAY, LINES
+	}
+
+	private final FileChannel channel;
+	private final Format format;
+	// offset where the next case goes, in ARRAY format it is right before the closing bracket
+	private long end;
+	private boolean empty;
+
+	private ResultWriter(File file, Format format) throws IOException {
+		this.format = format;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+	}
+
+	public ResultWriter(File file, Format format, boolean append) throws IOException {
+		this(file, format);
+		if (!append || channel.size() == 0) {
+			channel.truncate(0);
+			this.empty = true;
+			if (format == Format.ARRAY) {
+				write(0, "[" + ARRAY_END);
+				this.end = 1;
+			} else {
+				this.end = 0;
+			}
+		} else if (format == Format.ARRAY) {
+			locateArrayEnd(file);
+		} else {
+			this.end = channel.size();
+			this.empty = false;
+		}
+	}
+
+	/**
+	 * Continue an interrupted run from position, a value returned by position() before the crash.
+	 * Whatever follows it, possibly a case cut off mid-element, is dropped without being read.
+	 */
+	public static ResultWriter resume(File file, Format format, long position) throws IOException {
+		ResultWriter writer = new ResultWriter(file, format);
+		try {
+			long size = writer.channel.size();
+			if (position < 0 || position > size) {
+				throw new IOException(String.format("Cannot resume %s at %d, the file has %d bytes", file, position, size));
+			}
+			writer.truncate(position);
+		} catch (IOException e) {
+			writer.close();
+			throw e;
+		}
+		return writer;
+	}
+
+	public void write(JSONObject obj) throws IOException {
+		if (format == Format.ARRAY) {
+			String text = (empty ? "\n" : ",\n") + JSON.toJSONString(obj, PrettyFormat, WriteNulls);
+			int len = write(end, text + ARRAY_END);
+			end += len - ARRAY_END.length();
+			channel.truncate(end + ARRAY_END.length());
+		} else {
+			end += write(end, JSON.toJSONString(obj, WriteNulls) + "\n");
+		}
+		empty = false;
+		channel.force(false);
+	}
+
+	public long position() {
+		return end;
+	}
+
+	// Drop everything after position and close the array there
+	private void truncate(long position) throws IOException {
+		end = position;
+		if (format == Format.ARRAY) {
+			write(end, ARRAY_END);
+			channel.truncate(end + ARRAY_END.length());
+			empty = end <= 1;
+		} else {
+			channel.truncate(end);
+			empty = end == 0;
+		}
+		channel.force(false);
+	}
+
+	private int write(long position, String text) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		int len = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		return len;
+	}
+
+	// Find the closing bracket of an existing array, the next case overwrites it
+	private void locateArrayEnd(File file) throws IOException {
+		long pos = channel.size();
+		int ch;
+		do {
+			ch = readByte(--pos);
+		} while (pos > 0 && Character.isWhitespace(ch));
+		if (ch != ']') {
+			wrapLegacy(file, pos + 1);
+			return;
+		}
+		long close = pos;
+		do {
+			ch = readByte(--pos);
+		} while (pos > 0 && Character.isWhitespace(ch));
+		this.end = close;
+		this.empty = ch == '[';
+		if (!empty) {
+			// keep the last element, drop only the whitespace before the bracket
+			this.end = pos + 1;
+		}
+	}
+
+	// Turn the first length bytes, a sequence of objects joined by ",\n", into a JSON array
+	private void wrapLegacy(File file, long length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+		while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+		}
+		String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+		if (!content.stripLeading().startsWith("{")) {
+			throw new IOException(String.format("%s is neither a JSON array nor a sequence of objects", file));
+		}
+		channel.truncate(0);
+		this.end = write(0, "[\n" + content);
+		write(end, ARRAY_END);
+		this.empty = false;
+	}
+
+	private int readByte(long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		channel.read(buffer, position);
+		return buffer.get(0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
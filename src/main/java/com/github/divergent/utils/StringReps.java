@@ -32,6 +32,23 @@ public class StringReps {
         return Arrays.stream(s.split(END_LINE_REGEX, -1)).toList();
     }
 
+    // Offset of the first char of each line of splitToLines(s)
+    public static int[] lineStarts(String s) {
+        int count = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        int[] starts = new int[count];
+        for (int i = 0, line = 1; line < count; i++) {
+            if (s.charAt(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
     public static boolean isValidPath(String path) {
         if (path.matches(".*[\\u4E00-\\u9FFF]+.*")) {
             return false;
@@ -72,7 +89,19 @@ public class StringReps {
         return obj.getClass().toString();
     }
 
-    public static boolean isComment(List<String> lines) {
-        return lines.stream().allMatch(s -> s.isEmpty() || Arrays.stream(COMMENT_PREFIX).anyMatch(s::startsWith));
+    public static boolean isComment(List<? extends CharSequence> lines) {
+        return lines.stream().allMatch(s -> s.isEmpty() || Arrays.stream(COMMENT_PREFIX).anyMatch(p -> startsWith(s, p)));
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        if (s.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
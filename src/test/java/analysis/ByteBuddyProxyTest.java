@@ -10,6 +10,9 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.FileNotFoundException;
 
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 public class ByteBuddyProxyTest {
 	private final String WORK_SPACE = System.getProperty("user.dir");
 	private final File JP_TEST_DIR = new File(WORK_SPACE, "src/test/resources/javaparser");
@@ -50,5 +53,16 @@ public class ByteBuddyProxyTest {
 		proxy.visit(root, null);
 	}
 
+	@Test
+	public void testProxyClassReused() {
+		File log = new File("output/exception.log");
+		Visitor first = RunProxy.createProxy(Visitor.class, new RunProxy.ExceptionLogger(log),
+									null, null, null);
+		Visitor second = RunProxy.createProxy(Visitor.class, new RunProxy.ExceptionLogger(log),
+									null, null, null);
+		assertNotSame(first, second);
+		assertSame(first.getClass(), second.getClass());
+	}
+
 }
 
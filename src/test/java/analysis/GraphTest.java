@@ -1,11 +1,17 @@
 package analysis;
 
+import com.github.divergent.divide.Tarjan;
 import com.github.divergent.model.AbstractEdge;
 import com.github.divergent.model.Graph;
+import com.github.divergent.model.IntGraph;
 import com.github.divergent.utils.DotDumper;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GraphTest {
 
@@ -33,5 +39,99 @@ public class GraphTest {
 		dumper.dump(graph, new File("output/TestDump.dot"));
 	}
 
+	@Test
+	public void testTarjan() {
+		Random random = new Random(11);
+		for (int t = 0; t < 200; t++) {
+			int n = 1 + random.nextInt(30);
+			boolean[][] adj = new boolean[n][n];
+			Graph<Integer, AbstractEdge<Integer>> graph = new Graph<>();
+			for (int i = 0; i < n; i++) {
+				graph.addNode(i);
+			}
+			for (int e = random.nextInt(3 * n); e > 0; e--) {
+				int i = random.nextInt(n), j = random.nextInt(n);
+				adj[i][j] = true;
+				graph.addEdge(i, j, new AbstractEdge<>(i, j) {
+					@Override
+					public String getLabel() {
+						return null;
+					}
+				});
+			}
+			// transitive closure: i and j share a component iff each reaches the other
+			boolean[][] reach = new boolean[n][];
+			for (int i = 0; i < n; i++) {
+				reach[i] = adj[i].clone();
+			}
+			for (int k = 0; k < n; k++) {
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						reach[i][j] |= reach[i][k] && reach[k][j];
+					}
+				}
+			}
+			Set<Set<Integer>> expected = new HashSet<>();
+			for (int i = 0; i < n; i++) {
+				Set<Integer> scc = new HashSet<>();
+				for (int j = 0; j < n; j++) {
+					if (i == j ? reach[i][i] : reach[i][j] && reach[j][i]) {
+						scc.add(j);
+					}
+				}
+				if (!scc.isEmpty()) {
+					scc.add(i);
+					expected.add(scc);
+				}
+			}
+			Set<Set<Integer>> actual = new HashSet<>();
+			new Tarjan<>(graph).getComponents().forEach(scc -> actual.add(new HashSet<>(scc)));
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testDistinctSuccs() {
+		// edges of different kinds between the same pair are distinct, as with Edge
+		class KindEdge extends AbstractEdge<String> {
+			private final String kind;
+
+			KindEdge(String source, String target, String kind) {
+				super(source, target);
+				this.kind = kind;
+			}
+
+			@Override
+			public String getLabel() {
+				return kind;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				return super.equals(o) && kind.equals(((KindEdge) o).kind);
+			}
+
+			@Override
+			public int hashCode() {
+				return Objects.hash(super.hashCode(), kind);
+			}
+		}
+		Graph<String, KindEdge> graph = new Graph<>();
+		for (String kind : List.of("call", "def", "use")) {
+			graph.addEdge("a", "b", new KindEdge("a", "b", kind));
+		}
+		graph.addEdge("a", "c", new KindEdge("a", "c", "use"));
+		List<String> visited = new ArrayList<>();
+		graph.forEachSucc("a", visited::add);
+		assertEquals(4, visited.size());
 
-}
\ No newline at end of file
+		IntGraph<String> compact = IntGraph.of(graph);
+		int a = compact.getId("a");
+		Set<String> succs = new HashSet<>();
+		for (int i = compact.begin(a); i < compact.end(a); i++) {
+			assertTrue(succs.add(compact.getNode(compact.target(i))));
+		}
+		assertEquals(Set.of("b", "c"), succs);
+		assertTrue(compact.hasEdge(a, compact.getId("b")));
+	}
+}
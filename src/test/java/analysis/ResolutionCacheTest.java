@@ -0,0 +1,47 @@
+package analysis;
+
+import com.github.divergent.analysis.ResolutionCache;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResolutionCacheTest {
+
+	@Test
+	public void testDeclarationMemoized() {
+		ResolutionCache cache = new ResolutionCache();
+		ReflectionTypeSolver typeSolver = new ReflectionTypeSolver();
+		var first = cache.getDeclaration("java.lang.String", typeSolver);
+		assertNotNull(first);
+		assertSame(first, cache.getDeclaration("java.lang.String", typeSolver));
+		assertNull(cache.getDeclaration("no.such.Type", typeSolver));
+		assertNull(cache.getDeclaration("no.such.Type", typeSolver));
+		assertEquals(2, cache.getStats().getDeclarations().getHitCount());
+		assertEquals(2, cache.getStats().getDeclarations().getMissCount());
+	}
+
+	@Test
+	public void testSupertypesResolvedOnce() {
+		CompilationUnit cu = StaticJavaParser.parse("class A {} interface I {} class B extends A implements I, J {}");
+		ClassOrInterfaceDeclaration b = cu.getClassByName("B").orElseThrow();
+		AtomicInteger calls = new AtomicInteger();
+		ResolutionCache cache = new ResolutionCache();
+		for (int i = 0; i < 3; i++) {
+			var supertypes = cache.getSupertypes(b, type -> {
+				calls.incrementAndGet();
+				String name = type.getNameAsString();
+				return cu.findFirst(ClassOrInterfaceDeclaration.class, c -> c.getNameAsString().equals(name)).orElse(null);
+			});
+			assertEquals("A", supertypes.superClass().getNameAsString());
+			assertEquals(1, supertypes.implemented().size());
+		}
+		assertEquals(3, calls.get());
+		assertEquals(2, cache.getStats().getSupertypes().getHitCount());
+	}
+}
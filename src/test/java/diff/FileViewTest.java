@@ -0,0 +1,39 @@
+package diff;
+
+import com.github.divergent.model.FileView;
+import com.github.divergent.utils.StringReps;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FileViewTest {
+
+	@Test
+	public void testSameAsSplitToLines() {
+		Random random = new Random(11);
+		String[] pieces = {"a", " ", "\t", "\n", "\r\n", "\r", "//x", "*"};
+		for (int t = 0; t < 1000; t++) {
+			StringBuilder builder = new StringBuilder();
+			for (int i = random.nextInt(20); i > 0; i--) {
+				builder.append(pieces[random.nextInt(pieces.length)]);
+			}
+			String content = builder.toString();
+			FileView view = new FileView("A.java");
+			view.setContent(content);
+
+			List<String> expected = StringReps.splitToLines(content);
+			assertEquals(expected.size(), view.getLineCount());
+			for (int line = 1; line <= expected.size(); line++) {
+				assertEquals(expected.get(line - 1), view.getLine(line).toString());
+				assertEquals(expected.get(line - 1).strip(), view.getStrippedLine(line).toString());
+			}
+			int begin = random.nextInt(expected.size() + 2), end = begin + random.nextInt(4) - 1;
+			int from = Math.max(begin, 1), to = Math.min(end, expected.size());
+			List<String> range = from > to ? List.of() : expected.subList(from - 1, to);
+			assertEquals(range, view.getLines(begin, end, false).stream().map(CharSequence::toString).toList());
+		}
+	}
+}
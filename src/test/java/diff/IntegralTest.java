@@ -40,6 +40,21 @@ public class IntegralTest {
         diff.cleanUp();
     }
 
+    @Test
+    public void testGitRepoInMemory() throws Exception {
+        File project = new File(System.getProperty("user.dir"));
+        Diff.setInMemory(true);
+        try {
+            Diff diff = new Diff(project, new File("/root/evaluation/output"), "a989211", "080c04f", false);
+            Cluster cluster = new Cluster(diff);
+            cluster.compute();
+            logger.trace("Group size: {}", cluster.getResult().size());
+            diff.cleanUp();
+        } finally {
+            Diff.setInMemory(false);
+        }
+    }
+
 //    @Test
 //    public void testGitWordDiff() throws IOException, InterruptedException {
 //        ProcessBuilder processBuilder = new ProcessBuilder("git", "diff", "--word-diff=porcelain", "a.txt", "b.txt");
@@ -0,0 +1,41 @@
+package diff;
+
+import com.github.divergent.model.IntervalIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IntervalIndexTest {
+
+	@Test
+	public void testSameAsLinearScan() {
+		Random random = new Random(7);
+		for (int t = 0; t < 1000; t++) {
+			int n = random.nextInt(12);
+			long[][] intervals = new long[n][];
+			IntervalIndex<Integer> index = new IntervalIndex<>();
+			for (int i = 0; i < n; i++) {
+				long begin = random.nextInt(50), end = begin + random.nextInt(10);
+				intervals[i] = new long[]{begin, end};
+				index.add(begin, end, i);
+			}
+			index.build();
+
+			long begin = random.nextInt(60), end = begin + random.nextInt(8);
+			Set<Integer> expected = new TreeSet<>();
+			for (int i = 0; i < n; i++) {
+				if (intervals[i][1] >= begin && intervals[i][0] <= end) {
+					expected.add(i);
+				}
+			}
+			Set<Integer> actual = new TreeSet<>();
+			index.query(begin, end, actual::add);
+			assertEquals(expected, actual);
+			assertEquals(!expected.isEmpty(), index.overlaps(begin, end));
+		}
+	}
+}
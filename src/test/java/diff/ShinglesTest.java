@@ -0,0 +1,35 @@
+package diff;
+
+import com.github.divergent.model.Shingles;
+import info.debatty.java.stringsimilarity.Cosine;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShinglesTest {
+	private static final String ALPHABET = "ab (); x=1";
+
+	@Test
+	public void testSameAsCosine() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			String s1 = randomCode(random), s2 = i % 4 == 0 ? s1 + "ab" : randomCode(random);
+			Shingles x = new Shingles(s1), y = new Shingles(s2);
+			double expected = new Cosine().similarity(s1, s2);
+			assertEquals(expected, x.similarity(y), 0.0, s1 + " | " + s2);
+			assertTrue(!(x.upperBound(y) < x.similarity(y)), s1 + " | " + s2);
+		}
+	}
+
+	private String randomCode(Random random) {
+		StringBuilder builder = new StringBuilder();
+		int len = random.nextInt(40);
+		for (int i = 0; i < len; i++) {
+			builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,51 @@
+package diff;
+
+import com.github.divergent.divide.TokenDiff;
+import com.github.divergent.model.Info;
+import com.github.javaparser.Position;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static com.github.divergent.divide.TokenDiff.executeCommand;
+import static com.github.divergent.divide.TokenDiff.parseInfo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TokenDiffTest {
+
+	@Test
+	public void testChangedToken() {
+		List<String> prev = List.of("    int a = 1;");
+		List<String> next = List.of("    int b = 1;");
+		List<Info> insert = TokenDiff.compute(prev, next);
+		assertEquals(List.of(new Info(new Position(0, 9), new Position(0, 9))), insert);
+	}
+
+	@Test
+	public void testAdjacentTokens() {
+		List<String> prev = List.of("foo();", "return x;");
+		List<String> next = List.of("foo(); bar(y, z);", "return x;");
+		List<Info> insert = TokenDiff.compute(prev, next);
+		assertEquals(List.of(new Info(new Position(0, 8), new Position(0, 17))), insert);
+	}
+
+	@Test
+	public void testAgainstGit() throws IOException {
+		List<String> code1 = List.of("  if (a != null) {", "    a.run(x);", "  }");
+		List<String> code2 = List.of("  if (a == null) {", "    b.run(x, y);", "  }");
+
+		File dir = Files.createTempDirectory("token-diff").toFile();
+		File f1 = new File(dir, "f1.txt");
+		File f2 = new File(dir, "f2.txt");
+		FileUtils.writeLines(f1, code1);
+		FileUtils.writeLines(f2, code2);
+
+		assertEquals(parseInfo(executeCommand(dir, f2, f1), code1), TokenDiff.compute(code2, code1));
+		assertEquals(parseInfo(executeCommand(dir, f1, f2), code2), TokenDiff.compute(code1, code2));
+		FileUtils.deleteDirectory(dir);
+	}
+}
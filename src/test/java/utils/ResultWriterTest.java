@@ -0,0 +1,78 @@
+package utils;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.github.divergent.utils.Checkpoint;
+import com.github.divergent.utils.ResultWriter;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResultWriterTest {
+
+	@Test
+	public void testResumeAfterCutElement() throws IOException {
+		File dir = Files.createTempDirectory("result-writer").toFile();
+		try {
+			File out = new File(dir, "groups.json"), log = new File(dir, "groups.checkpoint");
+			try (ResultWriter writer = new ResultWriter(out, ResultWriter.Format.ARRAY, false);
+				 Checkpoint checkpoint = new Checkpoint(log, false)) {
+				writer.write(new JSONObject().fluentPut("case", 0));
+				checkpoint.record(0, writer.position());
+				writer.write(new JSONObject().fluentPut("case", 1).fluentPut("groups", "a long value"));
+			}
+			// the run dies while the second case is being written, before it is recorded
+			try (RandomAccessFile file = new RandomAccessFile(out, "rw")) {
+				file.setLength(file.length() - 10);
+			}
+			try (Checkpoint checkpoint = new Checkpoint(log, true);
+				 ResultWriter writer = ResultWriter.resume(out, ResultWriter.Format.ARRAY, checkpoint.getOffset())) {
+				assertTrue(checkpoint.isCompleted(0));
+				assertFalse(checkpoint.isCompleted(1));
+				writer.write(new JSONObject().fluentPut("case", 1));
+				checkpoint.record(1, writer.position());
+			}
+			JSONArray cases = JSON.parseArray(FileUtils.readFileToString(out, StandardCharsets.UTF_8));
+			assertEquals(2, cases.size());
+			assertEquals(0, cases.getJSONObject(0).getIntValue("case"));
+			assertEquals(1, cases.getJSONObject(1).getIntValue("case"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testResumeLines() throws IOException {
+		File dir = Files.createTempDirectory("result-writer").toFile();
+		try {
+			File out = new File(dir, "groups.jsonl");
+			long offset;
+			try (ResultWriter writer = new ResultWriter(out, ResultWriter.Format.LINES, false)) {
+				writer.write(new JSONObject().fluentPut("case", 0));
+				offset = writer.position();
+				writer.write(new JSONObject().fluentPut("case", 1));
+			}
+			try (RandomAccessFile file = new RandomAccessFile(out, "rw")) {
+				file.setLength(file.length() - 3);
+			}
+			try (ResultWriter writer = ResultWriter.resume(out, ResultWriter.Format.LINES, offset)) {
+				writer.write(new JSONObject().fluentPut("case", 1));
+			}
+			String[] lines = FileUtils.readFileToString(out, StandardCharsets.UTF_8).split("\n");
+			assertEquals(2, lines.length);
+			assertEquals(1, JSON.parseObject(lines[1]).getIntValue("case"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}